@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2014 Robert Maupin
+ * 
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+package org.csdgn.maru.bench;
+
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.csdgn.maru.BitPacker;
+import org.csdgn.maru.ByteConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Array conversions in {@link ByteConverter} in both byte orders, plus the
+ * variable length and {@link BitPacker} encodings. The size is the number of
+ * bytes of fixed width data.
+ * 
+ * @author Robert Maupin
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ByteConverterBenchmark {
+	@Param({ "64", "4096", "1048576", "67108864" })
+	public int size;
+
+	@Param({ "LITTLE_ENDIAN", "BIG_ENDIAN" })
+	public String order;
+
+	private ByteConverter converter;
+	private int[] ints;
+	private long[] timestamps;
+	private double[] doubles;
+	private byte[] bytes;
+	private byte[] varInts;
+	private byte[] packed;
+	private int[] intOutput;
+	private long[] longOutput;
+
+	@Setup
+	public void setup() {
+		final Random random = new Random(42);
+		converter = new ByteConverter("BIG_ENDIAN".equals(order) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+		ints = new int[size >> 2];
+		for (int i = 0; i < ints.length; ++i) {
+			ints[i] = random.nextInt() >> random.nextInt(32);
+		}
+		timestamps = new long[size >> 3];
+		long time = 1400000000000L;
+		for (int i = 0; i < timestamps.length; ++i) {
+			time += 1000 + random.nextInt(20);
+			timestamps[i] = time;
+		}
+		doubles = new double[size >> 3];
+		for (int i = 0; i < doubles.length; ++i) {
+			doubles[i] = random.nextGaussian();
+		}
+		bytes = new byte[size];
+		random.nextBytes(bytes);
+		varInts = new byte[ints.length * 5];
+		ByteConverter.putVarIntArray(varInts, 0, ints, 0, ints.length, true);
+		packed = new byte[BitPacker.maxLongSize(timestamps.length)];
+		BitPacker.encode(timestamps, 0, timestamps.length, packed, 0);
+		intOutput = new int[ints.length];
+		longOutput = new long[timestamps.length];
+	}
+
+	@Benchmark
+	public byte[] fromIntArray() {
+		return converter.fromIntArray(ints);
+	}
+
+	@Benchmark
+	public int[] toIntArray() {
+		return converter.toIntArray(bytes);
+	}
+
+	@Benchmark
+	public byte[] fromDoubleArray() {
+		return converter.fromDoubleArray(doubles);
+	}
+
+	@Benchmark
+	public double[] toDoubleArray() {
+		return converter.toDoubleArray(bytes);
+	}
+
+	@Benchmark
+	public byte[] putIntArray() {
+		converter.putIntArray(bytes, 0, ints, 0, ints.length);
+		return bytes;
+	}
+
+	@Benchmark
+	public int putVarIntArray() {
+		return ByteConverter.putVarIntArray(varInts, 0, ints, 0, ints.length, true);
+	}
+
+	@Benchmark
+	public int getVarIntArray() {
+		return ByteConverter.getVarIntArray(varInts, 0, intOutput, 0, intOutput.length, true);
+	}
+
+	@Benchmark
+	public int bitPackerEncode() {
+		return BitPacker.encode(timestamps, 0, timestamps.length, packed, 0);
+	}
+
+	@Benchmark
+	public int bitPackerDecode() {
+		return BitPacker.decode(packed, 0, longOutput, 0, longOutput.length);
+	}
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2014 Robert Maupin
+ * 
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+package org.csdgn.maru.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.csdgn.maru.ByteMatcher;
+import org.csdgn.maru.ByteReplacer;
+import org.csdgn.maru.Bytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Searching, replacing and hex conversion in {@link Bytes}. Searches are set
+ * up so the match is at the far end and the whole array is scanned.
+ * 
+ * @author Robert Maupin
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BytesBenchmark {
+	@Param({ "64", "4096", "1048576", "67108864" })
+	public int size;
+
+	private byte[] data;
+	private byte[] needle;
+	private byte[] lastNeedle;
+	private byte[] template;
+	private byte[] placeholder;
+	private byte[] value;
+	private String hex;
+	private ByteMatcher matcher;
+	private ByteReplacer replacer;
+
+	@Setup
+	public void setup() {
+		final Random random = new Random(42);
+		data = new byte[size];
+		for (int i = 0; i < size; ++i) {
+			data[i] = (byte) (2 + random.nextInt(254));
+		}
+		needle = new byte[16];
+		lastNeedle = new byte[16];
+		for (int i = 0; i < needle.length; ++i) {
+			needle[i] = (byte) ('a' + i);
+			lastNeedle[i] = (byte) ('A' + i);
+		}
+		/* byte searches look for 0 forwards and 1 backwards */
+		data[0] = 1;
+		data[size - 1] = 0;
+		System.arraycopy(lastNeedle, 0, data, 1, lastNeedle.length);
+		System.arraycopy(needle, 0, data, size - 1 - needle.length, needle.length);
+
+		/* a placeholder every kilobyte, or once in small inputs */
+		placeholder = "${x}".getBytes();
+		value = "replaced".getBytes();
+		template = data.clone();
+		for (int i = 0; i + placeholder.length <= size; i += 1024) {
+			System.arraycopy(placeholder, 0, template, i, placeholder.length);
+		}
+		replacer = new ByteReplacer(placeholder, value);
+		matcher = new ByteMatcher(needle, lastNeedle, placeholder, "signature".getBytes());
+		hex = Bytes.bytesToHex(data);
+	}
+
+	@Benchmark
+	public int indexOfByte() {
+		return Bytes.indexOf(data, (byte) 0);
+	}
+
+	@Benchmark
+	public int lastIndexOfByte() {
+		return Bytes.lastIndexOf(data, (byte) 1);
+	}
+
+	@Benchmark
+	public int indexOfBytes() {
+		return Bytes.indexOf(data, needle);
+	}
+
+	@Benchmark
+	public int lastIndexOfBytes() {
+		return Bytes.lastIndexOf(data, lastNeedle);
+	}
+
+	@Benchmark
+	public byte[] replace() {
+		return Bytes.replace(template, placeholder, value);
+	}
+
+	@Benchmark
+	public byte[] replacerReuse() {
+		return replacer.replace(template);
+	}
+
+	@Benchmark
+	public void matcherFind(final Blackhole hole) {
+		matcher.find(template, 0, template.length, new ByteMatcher.Listener() {
+			@Override
+			public boolean match(int pattern, long position) {
+				hole.consume(position);
+				return true;
+			}
+		});
+	}
+
+	@Benchmark
+	public String bytesToHex() {
+		return Bytes.bytesToHex(data);
+	}
+
+	@Benchmark
+	public byte[] hexToBytes() {
+		return Bytes.hexToBytes(hex);
+	}
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2014 Robert Maupin
+ * 
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+package org.csdgn.maru.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Checksum;
+
+import org.csdgn.maru.checksum.CRC;
+import org.csdgn.maru.checksum.CRC16;
+import org.csdgn.maru.checksum.Checksum32;
+import org.csdgn.maru.checksum.FowlerNollVo;
+import org.csdgn.maru.checksum.Jenkins;
+import org.csdgn.maru.checksum.XXHash64;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Bulk updates of each checksum, with the JDK's CRC32 for comparison.
+ * 
+ * @author Robert Maupin
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChecksumBenchmark {
+	@Param({ "64", "4096", "1048576", "67108864" })
+	public int size;
+
+	@Param({ "CRC16", "CRC32", "CRC32C", "CRC64_XZ", "Checksum32", "FNV1a", "Jenkins", "XXHash64", "JDK_CRC32" })
+	public String algorithm;
+
+	private byte[] data;
+	private Checksum checksum;
+
+	@Setup
+	public void setup() {
+		data = new byte[size];
+		new Random(42).nextBytes(data);
+		switch (algorithm) {
+		case "CRC16":
+			checksum = new CRC16();
+			break;
+		case "CRC32":
+			checksum = new CRC(CRC.CRC32);
+			break;
+		case "CRC32C":
+			checksum = new CRC(CRC.CRC32C);
+			break;
+		case "CRC64_XZ":
+			checksum = new CRC(CRC.CRC64_XZ);
+			break;
+		case "Checksum32":
+			checksum = new Checksum32();
+			break;
+		case "FNV1a":
+			checksum = new FowlerNollVo();
+			break;
+		case "Jenkins":
+			checksum = new Jenkins();
+			break;
+		case "XXHash64":
+			checksum = new XXHash64();
+			break;
+		default:
+			checksum = new java.util.zip.CRC32();
+		}
+	}
+
+	@Benchmark
+	public long update() {
+		checksum.reset();
+		checksum.update(data, 0, data.length);
+		return checksum.getValue();
+	}
+}
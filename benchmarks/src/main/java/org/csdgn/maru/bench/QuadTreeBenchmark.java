@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2014 Robert Maupin
+ * 
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+package org.csdgn.maru.bench;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.csdgn.maru.util.QuadTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building and querying a {@link QuadTree} of uniformly scattered points.
+ * The size is the number of points.
+ * 
+ * @author Robert Maupin
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuadTreeBenchmark {
+	private static final Rectangle2D BOUNDS = new Rectangle2D.Double(0, 0, 1000, 1000);
+
+	@Param({ "64", "4096", "262144" })
+	public int size;
+
+	private double[] xs;
+	private double[] ys;
+	private QuadTree<Integer> tree;
+	private int next = 0;
+
+	@Setup
+	public void setup() {
+		final Random random = new Random(42);
+		xs = new double[size];
+		ys = new double[size];
+		tree = new QuadTree<Integer>(BOUNDS);
+		for (int i = 0; i < size; ++i) {
+			xs[i] = random.nextDouble() * 1000;
+			ys[i] = random.nextDouble() * 1000;
+			tree.add(xs[i], ys[i], i);
+		}
+	}
+
+	@Benchmark
+	public QuadTree<Integer> build() {
+		final QuadTree<Integer> built = new QuadTree<Integer>(BOUNDS);
+		for (int i = 0; i < size; ++i) {
+			built.add(xs[i], ys[i], i);
+		}
+		return built;
+	}
+
+	@Benchmark
+	public Integer get() {
+		next = next + 1 == size ? 0 : next + 1;
+		return tree.get(xs[next], ys[next]);
+	}
+
+	@Benchmark
+	public ArrayList<Point2D> range() {
+		next = next + 1 == size ? 0 : next + 1;
+		return tree.range(xs[next], ys[next], 50, 50);
+	}
+}
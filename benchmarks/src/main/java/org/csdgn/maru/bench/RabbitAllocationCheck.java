@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2014 Robert Maupin
+ * 
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+package org.csdgn.maru.bench;
+
+import java.util.Collection;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the {@link RabbitBenchmark} crypt benchmarks with the gc profiler and
+ * fails unless each allocates next to nothing per operation. Every operation
+ * encrypts 4096 blocks, so even one small allocation per block would show up
+ * as tens of kilobytes.
+ * 
+ * @author Robert Maupin
+ */
+public class RabbitAllocationCheck {
+	private static final int SIZE = 65536;
+	/**
+	 * Allowance for the profiler's own measurement noise.
+	 */
+	private static final double MAX_BYTES_PER_OPERATION = 8;
+
+	public static void main(String[] args) throws RunnerException {
+		final Options options = new OptionsBuilder().include(RabbitBenchmark.class.getName() + ".crypt")
+				.param("size", String.valueOf(SIZE)).addProfiler(GCProfiler.class).build();
+		final Collection<RunResult> results = new Runner(options).run();
+		boolean failed = results.isEmpty();
+		for (RunResult run : results) {
+			final String name = run.getParams().getBenchmark();
+			final Result<?> norm = run.getSecondaryResults().get("gc.alloc.rate.norm");
+			if (norm == null) {
+				System.out.println(name + ": no allocation result");
+				failed = true;
+				continue;
+			}
+			final double bytes = norm.getScore();
+			System.out.printf("%s: %.3f bytes per operation, %.6f per block%n", name, bytes, bytes / (SIZE >> 4));
+			if (bytes > MAX_BYTES_PER_OPERATION) {
+				failed = true;
+			}
+		}
+		if (failed) {
+			System.out.println("Rabbit allocates while encrypting.");
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2014 Robert Maupin
+ * 
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+package org.csdgn.maru.bench;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.csdgn.maru.crypto.Rabbit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encryption with {@link Rabbit} into arrays and buffers.
+ * 
+ * @author Robert Maupin
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RabbitBenchmark {
+	@Param({ "64", "4096", "1048576", "67108864" })
+	public int size;
+
+	private Rabbit rabbit;
+	private byte[] data;
+	private byte[] output;
+	private ByteBuffer heap;
+	private ByteBuffer direct;
+
+	@Setup
+	public void setup() {
+		final Random random = new Random(42);
+		final byte[] key = new byte[16];
+		random.nextBytes(key);
+		rabbit = new Rabbit();
+		rabbit.setupKey(key);
+		rabbit.setupIV(random.nextLong());
+		data = new byte[size];
+		random.nextBytes(data);
+		output = new byte[size];
+		heap = ByteBuffer.wrap(data.clone());
+		direct = ByteBuffer.allocateDirect(size);
+		direct.put(data).clear();
+	}
+
+	@Benchmark
+	public byte[] cryptArray() {
+		rabbit.crypt(data, 0, output, 0, data.length);
+		return output;
+	}
+
+	@Benchmark
+	public ByteBuffer cryptHeapBuffer() {
+		heap.clear();
+		return rabbit.crypt(heap);
+	}
+
+	@Benchmark
+	public ByteBuffer cryptDirectBuffer() {
+		direct.clear();
+		return rabbit.crypt(direct);
+	}
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2014 Robert Maupin
+ * 
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+package org.csdgn.maru.crypto;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+
+/**
+ * Checks the byte array key and IV setup against the test vectors in RFC 4503
+ * appendix A.
+ * 
+ * @author Robert Maupin
+ */
+public class RabbitTest {
+	private static byte[] hex(String str) {
+		byte[] out = new byte[str.length() >> 1];
+		for (int i = 0; i < out.length; ++i) {
+			out[i] = (byte) Integer.parseInt(str.substring(i << 1, (i << 1) + 2), 16);
+		}
+		return out;
+	}
+
+	private static void assertKeystream(String key, String iv, String expected) {
+		Rabbit rabbit = new Rabbit();
+		rabbit.setupKey(hex(key));
+		if (iv != null) {
+			rabbit.setupIV(hex(iv));
+		}
+		assertArrayEquals(hex(expected), rabbit.crypt(new byte[expected.length() >> 1]));
+	}
+
+	@Test
+	public void testZeroKey() {
+		assertKeystream("00000000000000000000000000000000", null,
+				"B15754F036A5D6ECF56B45261C4AF702" + "88E8D815C59C0C397B696C4789C68AA7"
+						+ "F416A1C3700CD451DA68D1881673D696");
+	}
+
+	@Test
+	public void testByteKey() {
+		assertKeystream("912813292E3D36FE3BFC62F1DC51C3AC", null,
+				"3D2DF3C83EF627A1E97FC38487E2519C" + "F576CD61F4405B8896BF53AA8554FC19"
+						+ "E5547473FBDB43508AE53B20204D4C5E");
+		assertKeystream("8395741587E0C733E9E9AB01C09B0B04", null,
+				"FD307C34D557CBCDFAC4948410EBE2A7" + "44817C75AE292AB5C5CB88C7A58158A5"
+						+ "97710711E092B22A8C2B7F69548A9CC2");
+	}
+
+	@Test
+	public void testByteIV() {
+		assertKeystream("00000000000000000000000000000000", "0000000000000000",
+				"C6A7275EF85495D87CCD5D376705B7ED" + "5F29A6AC04F5EFD47B8F293270DC4A8D"
+						+ "2ADE822B29DE6C1EE52BDB8A47BF8F66");
+		assertKeystream("00000000000000000000000000000000", "C373F575C1267E59",
+				"1FCD4EB9580012E2E0DCCC9222017D6D" + "A75F4E10D12125017B2499FFED936F2E"
+						+ "EBC112C393E738392356BDD012029BA7");
+		assertKeystream("00000000000000000000000000000000", "A6EB561AD2F41727",
+				"445AD8C805858DBF70B6AF23A151104D" + "96C8F27947F42C5BAEAE67C6ACC35B03"
+						+ "9FCBFC895FA71C17313DF034F01551CB");
+	}
+}
@@ -0,0 +1,333 @@
+/**
+ * Copyright (c) 2014 Robert Maupin
+ * 
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+package org.csdgn.maru;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Compresses int and long arrays by packing them into blocks of 128 values,
+ * each stored with only as many bits per value as the block needs. Each block
+ * uses whichever is smaller of frame of reference encoding, where values are
+ * stored as offsets from the smallest, and delta encoding, where the
+ * differences between neighbours are stored that way instead. Sorted or
+ * slowly changing data such as timestamps and ids shrinks considerably.
+ * 
+ * <p>
+ * The number of values is not stored; the caller must keep it, the same as
+ * with {@link ByteConverter}.
+ * </p>
+ * 
+ * @author Robert Maupin
+ */
+public class BitPacker {
+	public static final int BLOCK_SIZE = 128;
+	private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final int DELTA = 0x80;
+	private static final int WIDTH_MASK = 0x7F;
+
+	/**
+	 * @return the most bytes the given number of ints can take once encoded
+	 */
+	public static int maxIntSize(int length) {
+		final int blocks = (length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		return blocks * 11 + length * 4;
+	}
+
+	/**
+	 * @return the most bytes the given number of longs can take once encoded
+	 */
+	public static int maxLongSize(int length) {
+		final int blocks = (length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		return blocks * 21 + length * 8;
+	}
+
+	/**
+	 * @return the number of bits needed for the largest of the unsigned values
+	 */
+	private static int width(long bits) {
+		return 64 - Long.numberOfLeadingZeros(bits);
+	}
+
+	/**
+	 * @return the number of bytes count values of the given width take
+	 */
+	private static int packedSize(int count, int width) {
+		return (int) ((long) count * width + 7 >>> 3);
+	}
+
+	/**
+	 * Packs count unsigned values of the given width, least significant bit
+	 * first.
+	 * 
+	 * @return the offset after the last byte written
+	 */
+	private static int pack(long[] values, int count, int width, byte[] dst, int offset) {
+		if (width == 0) {
+			return offset;
+		}
+		long acc = 0;
+		int bits = 0;
+		for (int i = 0; i < count; ++i) {
+			final long value = values[i];
+			acc |= value << bits;
+			int total = bits + width;
+			if (total >= 64) {
+				LONGS.set(dst, offset, acc);
+				offset += 8;
+				acc = bits == 0 ? 0 : value >>> 64 - bits;
+				total -= 64;
+			}
+			while (total >= 8) {
+				dst[offset++] = (byte) acc;
+				acc >>>= 8;
+				total -= 8;
+			}
+			bits = total;
+		}
+		if (bits > 0) {
+			dst[offset++] = (byte) acc;
+		}
+		return offset;
+	}
+
+	/**
+	 * Unpacks count unsigned values of the given width. Whole values are read
+	 * with a single unaligned long read where the array allows it; values
+	 * near the end of the array are put together a byte at a time.
+	 */
+	private static void unpack(byte[] src, int offset, int width, long[] values, int count) {
+		if (width == 0) {
+			for (int i = 0; i < count; ++i) {
+				values[i] = 0;
+			}
+			return;
+		}
+		final long mask = width == 64 ? -1L : (1L << width) - 1;
+		/* the last index a long can be read from */
+		final int safe = src.length - 9;
+		long position = 0;
+		for (int i = 0; i < count; ++i, position += width) {
+			final int index = offset + (int) (position >>> 3);
+			final int shift = (int) position & 7;
+			long value;
+			if (index <= safe) {
+				value = (long) LONGS.get(src, index) >>> shift;
+				if (shift + width > 64) {
+					value |= (src[index + 8] & 0xFFL) << 64 - shift;
+				}
+			} else {
+				value = 0;
+				final int bytes = shift + width + 7 >>> 3;
+				for (int j = 0; j < bytes; ++j) {
+					final long b = src[index + j] & 0xFFL;
+					value |= j == 0 ? b >>> shift : b << (j << 3) - shift;
+				}
+			}
+			values[i] = value & mask;
+		}
+	}
+
+	/**
+	 * Encodes the given range of values.
+	 * 
+	 * @return the offset after the last byte written
+	 * @see #maxIntSize(int)
+	 */
+	public static int encode(int[] src, int start, int length, byte[] dst, int offset) {
+		final long[] packed = new long[BLOCK_SIZE];
+		final int end = start + length;
+		for (int block = start; block < end; block += BLOCK_SIZE) {
+			final int count = Math.min(BLOCK_SIZE, end - block);
+			final int last = block + count;
+			int min = src[block];
+			int minDelta = Integer.MAX_VALUE;
+			for (int i = block + 1; i < last; ++i) {
+				min = Math.min(min, src[i]);
+				minDelta = Math.min(minDelta, src[i] - src[i - 1]);
+			}
+			long forBits = 0;
+			long deltaBits = 0;
+			for (int i = block; i < last; ++i) {
+				forBits |= src[i] - min & 0xFFFFFFFFL;
+				if (i > block) {
+					deltaBits |= src[i] - src[i - 1] - minDelta & 0xFFFFFFFFL;
+				}
+			}
+			final int forWidth = width(forBits);
+			final int deltaWidth = width(deltaBits);
+			final int forSize = packedSize(count, forWidth) + ByteConverter.varIntSize(ByteConverter.encodeZigZag(min));
+			final int deltaSize = packedSize(count - 1, deltaWidth)
+					+ ByteConverter.varIntSize(ByteConverter.encodeZigZag(src[block]))
+					+ ByteConverter.varIntSize(ByteConverter.encodeZigZag(minDelta));
+			if (count > 1 && deltaSize < forSize) {
+				dst[offset++] = (byte) (DELTA | deltaWidth);
+				offset = ByteConverter.putVarInt(dst, offset, ByteConverter.encodeZigZag(src[block]));
+				offset = ByteConverter.putVarInt(dst, offset, ByteConverter.encodeZigZag(minDelta));
+				for (int i = block + 1; i < last; ++i) {
+					packed[i - block - 1] = src[i] - src[i - 1] - minDelta & 0xFFFFFFFFL;
+				}
+				offset = pack(packed, count - 1, deltaWidth, dst, offset);
+			} else {
+				dst[offset++] = (byte) forWidth;
+				offset = ByteConverter.putVarInt(dst, offset, ByteConverter.encodeZigZag(min));
+				for (int i = block; i < last; ++i) {
+					packed[i - block] = src[i] - min & 0xFFFFFFFFL;
+				}
+				offset = pack(packed, count, forWidth, dst, offset);
+			}
+		}
+		return offset;
+	}
+
+	/**
+	 * Decodes length values into the given range of the array.
+	 * 
+	 * @return the offset after the last byte read
+	 */
+	public static int decode(byte[] src, int offset, int[] dst, int start, int length) {
+		final long[] packed = new long[BLOCK_SIZE];
+		final int end = start + length;
+		for (int block = start; block < end; block += BLOCK_SIZE) {
+			final int count = Math.min(BLOCK_SIZE, end - block);
+			final int header = src[offset++];
+			final int width = header & WIDTH_MASK;
+			if (width > 32) {
+				throw new IllegalArgumentException("Malformed block.");
+			}
+			final int reference = ByteConverter.decodeZigZag(ByteConverter.getVarInt(src, offset));
+			offset += ByteConverter.varIntSize(ByteConverter.encodeZigZag(reference));
+			if ((header & DELTA) != 0) {
+				final int minDelta = ByteConverter.decodeZigZag(ByteConverter.getVarInt(src, offset));
+				offset += ByteConverter.varIntSize(ByteConverter.encodeZigZag(minDelta));
+				unpack(src, offset, width, packed, count - 1);
+				int value = reference;
+				dst[block] = value;
+				for (int i = 1; i < count; ++i) {
+					value += (int) packed[i - 1] + minDelta;
+					dst[block + i] = value;
+				}
+				offset += packedSize(count - 1, width);
+			} else {
+				unpack(src, offset, width, packed, count);
+				for (int i = 0; i < count; ++i) {
+					dst[block + i] = reference + (int) packed[i];
+				}
+				offset += packedSize(count, width);
+			}
+		}
+		return offset;
+	}
+
+	/**
+	 * Encodes the given range of values.
+	 * 
+	 * @return the offset after the last byte written
+	 * @see #maxLongSize(int)
+	 */
+	public static int encode(long[] src, int start, int length, byte[] dst, int offset) {
+		final long[] packed = new long[BLOCK_SIZE];
+		final int end = start + length;
+		for (int block = start; block < end; block += BLOCK_SIZE) {
+			final int count = Math.min(BLOCK_SIZE, end - block);
+			final int last = block + count;
+			long min = src[block];
+			long minDelta = Long.MAX_VALUE;
+			for (int i = block + 1; i < last; ++i) {
+				min = Math.min(min, src[i]);
+				minDelta = Math.min(minDelta, src[i] - src[i - 1]);
+			}
+			long forBits = 0;
+			long deltaBits = 0;
+			for (int i = block; i < last; ++i) {
+				forBits |= src[i] - min;
+				if (i > block) {
+					deltaBits |= src[i] - src[i - 1] - minDelta;
+				}
+			}
+			final int forWidth = width(forBits);
+			final int deltaWidth = width(deltaBits);
+			final int forSize = packedSize(count, forWidth) + ByteConverter.varLongSize(ByteConverter.encodeZigZag(min));
+			final int deltaSize = packedSize(count - 1, deltaWidth)
+					+ ByteConverter.varLongSize(ByteConverter.encodeZigZag(src[block]))
+					+ ByteConverter.varLongSize(ByteConverter.encodeZigZag(minDelta));
+			if (count > 1 && deltaSize < forSize) {
+				dst[offset++] = (byte) (DELTA | deltaWidth);
+				offset = ByteConverter.putVarLong(dst, offset, ByteConverter.encodeZigZag(src[block]));
+				offset = ByteConverter.putVarLong(dst, offset, ByteConverter.encodeZigZag(minDelta));
+				for (int i = block + 1; i < last; ++i) {
+					packed[i - block - 1] = src[i] - src[i - 1] - minDelta;
+				}
+				offset = pack(packed, count - 1, deltaWidth, dst, offset);
+			} else {
+				dst[offset++] = (byte) forWidth;
+				offset = ByteConverter.putVarLong(dst, offset, ByteConverter.encodeZigZag(min));
+				for (int i = block; i < last; ++i) {
+					packed[i - block] = src[i] - min;
+				}
+				offset = pack(packed, count, forWidth, dst, offset);
+			}
+		}
+		return offset;
+	}
+
+	/**
+	 * Decodes length values into the given range of the array.
+	 * 
+	 * @return the offset after the last byte read
+	 */
+	public static int decode(byte[] src, int offset, long[] dst, int start, int length) {
+		final long[] packed = new long[BLOCK_SIZE];
+		final int end = start + length;
+		for (int block = start; block < end; block += BLOCK_SIZE) {
+			final int count = Math.min(BLOCK_SIZE, end - block);
+			final int header = src[offset++];
+			final int width = header & WIDTH_MASK;
+			if (width > 64) {
+				throw new IllegalArgumentException("Malformed block.");
+			}
+			final long reference = ByteConverter.decodeZigZag(ByteConverter.getVarLong(src, offset));
+			offset += ByteConverter.varLongSize(ByteConverter.encodeZigZag(reference));
+			if ((header & DELTA) != 0) {
+				final long minDelta = ByteConverter.decodeZigZag(ByteConverter.getVarLong(src, offset));
+				offset += ByteConverter.varLongSize(ByteConverter.encodeZigZag(minDelta));
+				unpack(src, offset, width, packed, count - 1);
+				long value = reference;
+				dst[block] = value;
+				for (int i = 1; i < count; ++i) {
+					value += packed[i - 1] + minDelta;
+					dst[block + i] = value;
+				}
+				offset += packedSize(count - 1, width);
+			} else {
+				unpack(src, offset, width, packed, count);
+				for (int i = 0; i < count; ++i) {
+					dst[block + i] = reference + packed[i];
+				}
+				offset += packedSize(count, width);
+			}
+		}
+		return offset;
+	}
+}
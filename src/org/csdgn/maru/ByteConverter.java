@@ -22,6 +22,11 @@
  */
 package org.csdgn.maru;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
 /**
@@ -35,7 +40,17 @@ import java.nio.ByteOrder;
  * @author Robert Maupin
  * 
  */
-public class ByteConverter {	
+public class ByteConverter {
+	private static final VarHandle SHORT_BE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle SHORT_LE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle LONG_BE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle FLOAT_BE = MethodHandles.byteArrayViewVarHandle(float[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle FLOAT_LE = MethodHandles.byteArrayViewVarHandle(float[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle DOUBLE_BE = MethodHandles.byteArrayViewVarHandle(double[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle DOUBLE_LE = MethodHandles.byteArrayViewVarHandle(double[].class, ByteOrder.LITTLE_ENDIAN);
 	public static final ByteConverter LITTLE_ENDIAN = new ByteConverter(ByteOrder.LITTLE_ENDIAN);
 	public static final ByteConverter BIG_ENDIAN = new ByteConverter(ByteOrder.BIG_ENDIAN);
 
@@ -55,7 +70,9 @@ public class ByteConverter {
 	}
 
 	public byte[] fromDouble(double value) {
-		return fromLong(Double.doubleToRawLongBits(value));
+		byte[] output = new byte[8];
+		putDouble(output, 0, value);
+		return output;
 	}
 
 	public byte[] fromDoubleArray(double[] value) {
@@ -67,25 +84,15 @@ public class ByteConverter {
 	}
 
 	public byte[] fromDoubleArray(double[] value, int start, int length) {
-		int end = length + start;
 		byte[] output = new byte[length << 3];
-		for (int i = start; i < end; ++i) {
-			int n = i - start << 3;
-			byte[] buf = fromDouble(value[i]);
-			output[n] = buf[0];
-			output[n + 1] = buf[1];
-			output[n + 2] = buf[2];
-			output[n + 3] = buf[3];
-			output[n + 4] = buf[4];
-			output[n + 5] = buf[5];
-			output[n + 6] = buf[6];
-			output[n + 7] = buf[7];
-		}
+		putDoubleArray(output, 0, value, start, length);
 		return output;
 	}
 
 	public byte[] fromFloat(float value) {
-		return fromInt(Float.floatToRawIntBits(value));
+		byte[] output = new byte[4];
+		putFloat(output, 0, value);
+		return output;
 	}
 
 	public byte[] fromFloatArray(float[] value) {
@@ -97,24 +104,15 @@ public class ByteConverter {
 	}
 
 	public byte[] fromFloatArray(float[] value, int start, int length) {
-		int end = length + start;
 		byte[] output = new byte[length << 2];
-		for (int i = start; i < end; ++i) {
-			int n = i - start << 2;
-			byte[] buf = fromFloat(value[i]);
-			output[n] = buf[0];
-			output[n + 1] = buf[1];
-			output[n + 2] = buf[2];
-			output[n + 3] = buf[3];
-		}
+		putFloatArray(output, 0, value, start, length);
 		return output;
 	}
 
 	public byte[] fromInt(int value) {
-		if (order == ByteOrder.BIG_ENDIAN) {
-			return new byte[] { ubyte(value, 24), ubyte(value, 16), ubyte(value, 8), ubyte(value, 0) };
-		}
-		return new byte[] { ubyte(value, 0), ubyte(value, 8), ubyte(value, 16), ubyte(value, 24) };
+		byte[] output = new byte[4];
+		putInt(output, 0, value);
+		return output;
 	}
 
 	public byte[] fromIntArray(int[] value) {
@@ -126,26 +124,15 @@ public class ByteConverter {
 	}
 
 	public byte[] fromIntArray(int[] value, int start, int length) {
-		int end = length + start;
 		byte[] output = new byte[length << 2];
-		for (int i = start; i < end; ++i) {
-			int n = i - start << 2;
-			byte[] buf = fromInt(value[i]);
-			output[n] = buf[0];
-			output[n + 1] = buf[1];
-			output[n + 2] = buf[2];
-			output[n + 3] = buf[3];
-		}
+		putIntArray(output, 0, value, start, length);
 		return output;
 	}
 
 	public byte[] fromLong(long value) {
-		if (order == ByteOrder.BIG_ENDIAN) {
-			return new byte[] { ubyte(value, 56), ubyte(value, 48), ubyte(value, 40), ubyte(value, 32), ubyte(value, 24), ubyte(value, 16),
-					ubyte(value, 8), ubyte(value, 0) };
-		}
-		return new byte[] { ubyte(value, 0), ubyte(value, 8), ubyte(value, 16), ubyte(value, 24), ubyte(value, 32), ubyte(value, 40),
-				ubyte(value, 48), ubyte(value, 56) };
+		byte[] output = new byte[8];
+		putLong(output, 0, value);
+		return output;
 	}
 
 	public byte[] fromLongArray(long[] value) {
@@ -157,28 +144,15 @@ public class ByteConverter {
 	}
 
 	public byte[] fromLongArray(long[] value, int start, int length) {
-		int end = length + start;
 		byte[] output = new byte[length << 3];
-		for (int i = start; i < end; ++i) {
-			int n = i - start << 3;
-			byte[] buf = fromLong(value[i]);
-			output[n] = buf[0];
-			output[n + 1] = buf[1];
-			output[n + 2] = buf[2];
-			output[n + 3] = buf[3];
-			output[n + 4] = buf[4];
-			output[n + 5] = buf[5];
-			output[n + 6] = buf[6];
-			output[n + 7] = buf[7];
-		}
+		putLongArray(output, 0, value, start, length);
 		return output;
 	}
 
 	public byte[] fromShort(short value) {
-		if (order == ByteOrder.BIG_ENDIAN) {
-			return new byte[] { ubyte(value, 8), ubyte(value, 0) };
-		}
-		return new byte[] { ubyte(value, 0), ubyte(value, 8) };
+		byte[] output = new byte[2];
+		putShort(output, 0, value);
+		return output;
 	}
 
 	public byte[] fromShortArray(short[] value) {
@@ -190,17 +164,286 @@ public class ByteConverter {
 	}
 
 	public byte[] fromShortArray(short[] value, int start, int length) {
-		int end = length + start;
 		byte[] output = new byte[length << 1];
-		for (int i = start; i < end; ++i) {
-			int n = i - start << 1;
-			byte[] buf = fromShort(value[i]);
-			output[n] = buf[0];
-			output[n + 1] = buf[1];
-		}
+		putShortArray(output, 0, value, start, length);
 		return output;
 	}
 
+	/**
+	 * Reads length values from the array at the given offset into the
+	 * destination array from its start. In native order this is a straight
+	 * memory copy.
+	 */
+	public void getDoubleArray(byte[] src, int offset, double[] dst, int start, int length) {
+		ByteBuffer.wrap(src, offset, length << 3).order(order).asDoubleBuffer().get(dst, start, length);
+	}
+
+	/**
+	 * Reads length values from the buffer in this converter's order, whatever
+	 * the order of the buffer, into the destination array from its start.
+	 */
+	public void getDoubleArray(ByteBuffer src, double[] dst, int start, int length) {
+		final int position = src.position();
+		if (length > src.remaining() >> 3) {
+			throw new BufferUnderflowException();
+		}
+		src.duplicate().order(order).asDoubleBuffer().get(dst, start, length);
+		src.position(position + (length << 3));
+	}
+
+	/**
+	 * Reads length values from the array at the given offset into the
+	 * destination array from its start. In native order this is a straight
+	 * memory copy.
+	 */
+	public void getFloatArray(byte[] src, int offset, float[] dst, int start, int length) {
+		ByteBuffer.wrap(src, offset, length << 2).order(order).asFloatBuffer().get(dst, start, length);
+	}
+
+	/**
+	 * Reads length values from the buffer in this converter's order, whatever
+	 * the order of the buffer, into the destination array from its start.
+	 */
+	public void getFloatArray(ByteBuffer src, float[] dst, int start, int length) {
+		final int position = src.position();
+		if (length > src.remaining() >> 2) {
+			throw new BufferUnderflowException();
+		}
+		src.duplicate().order(order).asFloatBuffer().get(dst, start, length);
+		src.position(position + (length << 2));
+	}
+
+	/**
+	 * Reads length values from the array at the given offset into the
+	 * destination array from its start. In native order this is a straight
+	 * memory copy.
+	 */
+	public void getIntArray(byte[] src, int offset, int[] dst, int start, int length) {
+		ByteBuffer.wrap(src, offset, length << 2).order(order).asIntBuffer().get(dst, start, length);
+	}
+
+	/**
+	 * Reads length values from the buffer in this converter's order, whatever
+	 * the order of the buffer, into the destination array from its start.
+	 */
+	public void getIntArray(ByteBuffer src, int[] dst, int start, int length) {
+		final int position = src.position();
+		if (length > src.remaining() >> 2) {
+			throw new BufferUnderflowException();
+		}
+		src.duplicate().order(order).asIntBuffer().get(dst, start, length);
+		src.position(position + (length << 2));
+	}
+
+	/**
+	 * Reads length values from the array at the given offset into the
+	 * destination array from its start. In native order this is a straight
+	 * memory copy.
+	 */
+	public void getLongArray(byte[] src, int offset, long[] dst, int start, int length) {
+		ByteBuffer.wrap(src, offset, length << 3).order(order).asLongBuffer().get(dst, start, length);
+	}
+
+	/**
+	 * Reads length values from the buffer in this converter's order, whatever
+	 * the order of the buffer, into the destination array from its start.
+	 */
+	public void getLongArray(ByteBuffer src, long[] dst, int start, int length) {
+		final int position = src.position();
+		if (length > src.remaining() >> 3) {
+			throw new BufferUnderflowException();
+		}
+		src.duplicate().order(order).asLongBuffer().get(dst, start, length);
+		src.position(position + (length << 3));
+	}
+
+	/**
+	 * Reads length values from the array at the given offset into the
+	 * destination array from its start. In native order this is a straight
+	 * memory copy.
+	 */
+	public void getShortArray(byte[] src, int offset, short[] dst, int start, int length) {
+		ByteBuffer.wrap(src, offset, length << 1).order(order).asShortBuffer().get(dst, start, length);
+	}
+
+	/**
+	 * Reads length values from the buffer in this converter's order, whatever
+	 * the order of the buffer, into the destination array from its start.
+	 */
+	public void getShortArray(ByteBuffer src, short[] dst, int start, int length) {
+		final int position = src.position();
+		if (length > src.remaining() >> 1) {
+			throw new BufferUnderflowException();
+		}
+		src.duplicate().order(order).asShortBuffer().get(dst, start, length);
+		src.position(position + (length << 1));
+	}
+
+	/**
+	 * Writes the value into the array at the given offset.
+	 */
+	public void putShort(byte[] dst, int offset, short value) {
+		if (order == ByteOrder.BIG_ENDIAN) {
+			SHORT_BE.set(dst, offset, value);
+		} else {
+			SHORT_LE.set(dst, offset, value);
+		}
+	}
+
+	/**
+	 * Writes length values from the start of the given array into the
+	 * destination array at the given offset. In native order this is a
+	 * straight memory copy.
+	 */
+	public void putShortArray(byte[] dst, int offset, short[] value, int start, int length) {
+		ByteBuffer.wrap(dst, offset, length << 1).order(order).asShortBuffer().put(value, start, length);
+	}
+
+	/**
+	 * Writes length values from the start of the given array into the buffer
+	 * in this converter's order, whatever the order of the buffer.
+	 */
+	public void putShortArray(ByteBuffer dst, short[] value, int start, int length) {
+		final int position = dst.position();
+		if (length > dst.remaining() >> 1) {
+			throw new BufferOverflowException();
+		}
+		dst.duplicate().order(order).asShortBuffer().put(value, start, length);
+		dst.position(position + (length << 1));
+	}
+
+	/**
+	 * Writes the value into the array at the given offset.
+	 */
+	public void putInt(byte[] dst, int offset, int value) {
+		if (order == ByteOrder.BIG_ENDIAN) {
+			INT_BE.set(dst, offset, value);
+		} else {
+			INT_LE.set(dst, offset, value);
+		}
+	}
+
+	/**
+	 * Writes length values from the start of the given array into the
+	 * destination array at the given offset. In native order this is a
+	 * straight memory copy.
+	 */
+	public void putIntArray(byte[] dst, int offset, int[] value, int start, int length) {
+		ByteBuffer.wrap(dst, offset, length << 2).order(order).asIntBuffer().put(value, start, length);
+	}
+
+	/**
+	 * Writes length values from the start of the given array into the buffer
+	 * in this converter's order, whatever the order of the buffer.
+	 */
+	public void putIntArray(ByteBuffer dst, int[] value, int start, int length) {
+		final int position = dst.position();
+		if (length > dst.remaining() >> 2) {
+			throw new BufferOverflowException();
+		}
+		dst.duplicate().order(order).asIntBuffer().put(value, start, length);
+		dst.position(position + (length << 2));
+	}
+
+	/**
+	 * Writes the value into the array at the given offset.
+	 */
+	public void putLong(byte[] dst, int offset, long value) {
+		if (order == ByteOrder.BIG_ENDIAN) {
+			LONG_BE.set(dst, offset, value);
+		} else {
+			LONG_LE.set(dst, offset, value);
+		}
+	}
+
+	/**
+	 * Writes length values from the start of the given array into the
+	 * destination array at the given offset. In native order this is a
+	 * straight memory copy.
+	 */
+	public void putLongArray(byte[] dst, int offset, long[] value, int start, int length) {
+		ByteBuffer.wrap(dst, offset, length << 3).order(order).asLongBuffer().put(value, start, length);
+	}
+
+	/**
+	 * Writes length values from the start of the given array into the buffer
+	 * in this converter's order, whatever the order of the buffer.
+	 */
+	public void putLongArray(ByteBuffer dst, long[] value, int start, int length) {
+		final int position = dst.position();
+		if (length > dst.remaining() >> 3) {
+			throw new BufferOverflowException();
+		}
+		dst.duplicate().order(order).asLongBuffer().put(value, start, length);
+		dst.position(position + (length << 3));
+	}
+
+	/**
+	 * Writes the value into the array at the given offset.
+	 */
+	public void putFloat(byte[] dst, int offset, float value) {
+		if (order == ByteOrder.BIG_ENDIAN) {
+			FLOAT_BE.set(dst, offset, value);
+		} else {
+			FLOAT_LE.set(dst, offset, value);
+		}
+	}
+
+	/**
+	 * Writes length values from the start of the given array into the
+	 * destination array at the given offset. In native order this is a
+	 * straight memory copy.
+	 */
+	public void putFloatArray(byte[] dst, int offset, float[] value, int start, int length) {
+		ByteBuffer.wrap(dst, offset, length << 2).order(order).asFloatBuffer().put(value, start, length);
+	}
+
+	/**
+	 * Writes length values from the start of the given array into the buffer
+	 * in this converter's order, whatever the order of the buffer.
+	 */
+	public void putFloatArray(ByteBuffer dst, float[] value, int start, int length) {
+		final int position = dst.position();
+		if (length > dst.remaining() >> 2) {
+			throw new BufferOverflowException();
+		}
+		dst.duplicate().order(order).asFloatBuffer().put(value, start, length);
+		dst.position(position + (length << 2));
+	}
+
+	/**
+	 * Writes the value into the array at the given offset.
+	 */
+	public void putDouble(byte[] dst, int offset, double value) {
+		if (order == ByteOrder.BIG_ENDIAN) {
+			DOUBLE_BE.set(dst, offset, value);
+		} else {
+			DOUBLE_LE.set(dst, offset, value);
+		}
+	}
+
+	/**
+	 * Writes length values from the start of the given array into the
+	 * destination array at the given offset. In native order this is a
+	 * straight memory copy.
+	 */
+	public void putDoubleArray(byte[] dst, int offset, double[] value, int start, int length) {
+		ByteBuffer.wrap(dst, offset, length << 3).order(order).asDoubleBuffer().put(value, start, length);
+	}
+
+	/**
+	 * Writes length values from the start of the given array into the buffer
+	 * in this converter's order, whatever the order of the buffer.
+	 */
+	public void putDoubleArray(ByteBuffer dst, double[] value, int start, int length) {
+		final int position = dst.position();
+		if (length > dst.remaining() >> 3) {
+			throw new BufferOverflowException();
+		}
+		dst.duplicate().order(order).asDoubleBuffer().put(value, start, length);
+		dst.position(position + (length << 3));
+	}
+
 	public void setByteOrder(ByteOrder order) {
 		this.order = order;
 	}
@@ -221,11 +464,24 @@ public class ByteConverter {
 		return toDoubleArray(array, start, array.length - start);
 	}
 
+	/**
+	 * Decodes the given number of bytes from the start, ignoring any partial
+	 * value at the end.
+	 */
 	public double[] toDoubleArray(byte[] array, int start, int length) {
-		double[] output = new double[length - start >> 3];
-		for (int i = 0; i < output.length; ++i) {
-			output[i] = toDouble(array, start + (i << 3));
-		}
+		double[] output = new double[length >> 3];
+		getDoubleArray(array, start, output, 0, output.length);
+		return output;
+	}
+
+	/**
+	 * Decodes the remaining bytes of the buffer in this converter's order,
+	 * ignoring any partial value at the end. The buffer is left after the
+	 * last value read.
+	 */
+	public double[] toDoubleArray(ByteBuffer src) {
+		double[] output = new double[src.remaining() >> 3];
+		getDoubleArray(src, output, 0, output.length);
 		return output;
 	}
 
@@ -245,26 +501,36 @@ public class ByteConverter {
 		return toFloatArray(array, start, array.length - start);
 	}
 
+	/**
+	 * Decodes the given number of bytes from the start, ignoring any partial
+	 * value at the end.
+	 */
 	public float[] toFloatArray(byte[] array, int start, int length) {
-		float[] output = new float[length - start >> 2];
-		for (int i = 0; i < output.length; ++i) {
-			output[i] = toFloat(array, start + (i << 2));
-		}
+		float[] output = new float[length >> 2];
+		getFloatArray(array, start, output, 0, output.length);
+		return output;
+	}
+
+	/**
+	 * Decodes the remaining bytes of the buffer in this converter's order,
+	 * ignoring any partial value at the end. The buffer is left after the
+	 * last value read.
+	 */
+	public float[] toFloatArray(ByteBuffer src) {
+		float[] output = new float[src.remaining() >> 2];
+		getFloatArray(src, output, 0, output.length);
 		return output;
 	}
 
 	public int toInt(byte[] array) {
-		if (order == ByteOrder.BIG_ENDIAN) {
-			return uint(array[0], 24) | uint(array[1], 16) | uint(array[2], 8) | uint(array[3], 0);
-		}
-		return uint(array[3], 24) | uint(array[2], 16) | uint(array[1], 8) | uint(array[0], 0);
+		return toInt(array, 0);
 	}
 
 	public int toInt(byte[] array, int start) {
 		if (order == ByteOrder.BIG_ENDIAN) {
-			return uint(array[start], 24) | uint(array[start + 1], 16) | uint(array[start + 2], 8) | uint(array[start + 3], 0);
+			return (int) INT_BE.get(array, start);
 		}
-		return uint(array[start + 3], 24) | uint(array[start + 2], 16) | uint(array[start + 1], 8) | uint(array[start], 0);
+		return (int) INT_LE.get(array, start);
 	}
 
 	public int[] toIntArray(byte[] array) {
@@ -275,30 +541,36 @@ public class ByteConverter {
 		return toIntArray(array, start, array.length - start);
 	}
 
+	/**
+	 * Decodes the given number of bytes from the start, ignoring any partial
+	 * value at the end.
+	 */
 	public int[] toIntArray(byte[] array, int start, int length) {
-		int[] output = new int[length - start >> 2];
-		for (int i = 0; i < output.length; ++i) {
-			output[i] = toInt(array, start + (i << 2));
-		}
+		int[] output = new int[length >> 2];
+		getIntArray(array, start, output, 0, output.length);
+		return output;
+	}
+
+	/**
+	 * Decodes the remaining bytes of the buffer in this converter's order,
+	 * ignoring any partial value at the end. The buffer is left after the
+	 * last value read.
+	 */
+	public int[] toIntArray(ByteBuffer src) {
+		int[] output = new int[src.remaining() >> 2];
+		getIntArray(src, output, 0, output.length);
 		return output;
 	}
 
 	public long toLong(byte[] array) {
-		if (order == ByteOrder.BIG_ENDIAN) {
-			return ulong(array[0], 56) | ulong(array[1], 48) | ulong(array[2], 40) | ulong(array[3], 32) | ulong(array[4], 24)
-					| ulong(array[5], 16) | ulong(array[6], 8) | ulong(array[7], 0);
-		}
-		return ulong(array[7], 56) | ulong(array[6], 48) | ulong(array[5], 40) | ulong(array[4], 32) | ulong(array[3], 24)
-				| ulong(array[2], 16) | ulong(array[1], 8) | ulong(array[0], 0);
+		return toLong(array, 0);
 	}
 
 	public long toLong(byte[] array, int start) {
 		if (order == ByteOrder.BIG_ENDIAN) {
-			return ulong(array[start], 56) | ulong(array[start + 1], 48) | ulong(array[start + 2], 40) | ulong(array[start + 3], 32)
-					| ulong(array[start + 4], 24) | ulong(array[start + 5], 16) | ulong(array[start + 6], 8) | ulong(array[start + 7], 0);
+			return (long) LONG_BE.get(array, start);
 		}
-		return ulong(array[start + 7], 56) | ulong(array[start + 6], 48) | ulong(array[start + 5], 40) | ulong(array[start + 4], 32)
-				| ulong(array[start + 3], 24) | ulong(array[start + 2], 16) | ulong(array[start + 1], 8) | ulong(array[start], 0);
+		return (long) LONG_LE.get(array, start);
 	}
 
 	public long[] toLongArray(byte[] array) {
@@ -309,26 +581,36 @@ public class ByteConverter {
 		return toLongArray(array, start, array.length - start);
 	}
 
+	/**
+	 * Decodes the given number of bytes from the start, ignoring any partial
+	 * value at the end.
+	 */
 	public long[] toLongArray(byte[] array, int start, int length) {
-		long[] output = new long[length - start >> 3];
-		for (int i = 0; i < output.length; ++i) {
-			output[i] = toLong(array, start + (i << 3));
-		}
+		long[] output = new long[length >> 3];
+		getLongArray(array, start, output, 0, output.length);
+		return output;
+	}
+
+	/**
+	 * Decodes the remaining bytes of the buffer in this converter's order,
+	 * ignoring any partial value at the end. The buffer is left after the
+	 * last value read.
+	 */
+	public long[] toLongArray(ByteBuffer src) {
+		long[] output = new long[src.remaining() >> 3];
+		getLongArray(src, output, 0, output.length);
 		return output;
 	}
 
 	public short toShort(byte[] array) {
-		if (order == ByteOrder.BIG_ENDIAN) {
-			return (short) (uint(array[0], 8) | uint(array[1], 0));
-		}
-		return (short) (uint(array[1], 8) | uint(array[0], 0));
+		return toShort(array, 0);
 	}
 
 	public short toShort(byte[] array, int start) {
 		if (order == ByteOrder.BIG_ENDIAN) {
-			return (short) (uint(array[start], 8) | uint(array[start + 1], 0));
+			return (short) SHORT_BE.get(array, start);
 		}
-		return (short) (uint(array[start + 1], 8) | uint(array[start], 0));
+		return (short) SHORT_LE.get(array, start);
 	}
 
 	public short[] toShortArray(byte[] array) {
@@ -339,23 +621,457 @@ public class ByteConverter {
 		return toShortArray(array, start, array.length - start);
 	}
 
+	/**
+	 * Decodes the given number of bytes from the start, ignoring any partial
+	 * value at the end.
+	 */
 	public short[] toShortArray(byte[] array, int start, int length) {
-		short[] output = new short[length - start >> 1];
-		for (int i = 0; i < output.length; ++i) {
-			output[i] = toShort(array, start + (i << 1));
-		}
+		short[] output = new short[length >> 1];
+		getShortArray(array, start, output, 0, output.length);
 		return output;
 	}
 
-	private byte ubyte(long b, int rshf) {
-		return (byte) (b >>> rshf);
+	/**
+	 * Decodes the remaining bytes of the buffer in this converter's order,
+	 * ignoring any partial value at the end. The buffer is left after the
+	 * last value read.
+	 */
+	public short[] toShortArray(ByteBuffer src) {
+		short[] output = new short[src.remaining() >> 1];
+		getShortArray(src, output, 0, output.length);
+		return output;
+	}
+
+	/**
+	 * Rejects the last byte of a variable length integer that began shift
+	 * bits in if it is zero padding or has bits past the width of the type,
+	 * as neither is written by this class.
+	 */
+	private static void checkLastByte(long b, int shift, int bits) {
+		if (b == 0 || shift + 7 > bits && b >>> bits - shift != 0) {
+			throw new IllegalArgumentException("Malformed variable length integer.");
+		}
+	}
+
+	/**
+	 * Maps signed values to unsigned ones so that small negative values
+	 * encode as short variable length integers.
+	 */
+	public static int encodeZigZag(int value) {
+		return value << 1 ^ value >> 31;
+	}
+
+	/**
+	 * Reverses {@link #encodeZigZag(int)}.
+	 */
+	public static int decodeZigZag(int value) {
+		return value >>> 1 ^ -(value & 1);
+	}
+
+	/**
+	 * @return how many bytes the value takes as an unsigned LEB128 variable
+	 *         length integer, 1 to 5
+	 */
+	public static int varIntSize(int value) {
+		return (32 - Integer.numberOfLeadingZeros(value | 1) + 6) / 7;
+	}
+
+	/**
+	 * @return how many bytes the given range of values takes as variable
+	 *         length integers
+	 */
+	public static long varIntSize(int[] values, int start, int length, boolean zigZag) {
+		final int end = start + length;
+		long size = 0;
+		for (int i = start; i < end; ++i) {
+			size += varIntSize(zigZag ? encodeZigZag(values[i]) : values[i]);
+		}
+		return size;
+	}
+
+	/**
+	 * Writes the value as an unsigned LEB128 variable length integer.
+	 * 
+	 * @return the offset after the last byte written
+	 */
+	public static int putVarInt(byte[] dst, int offset, int value) {
+		if ((value & ~0x7F) == 0) {
+			dst[offset] = (byte) value;
+			return offset + 1;
+		}
+		if ((value & ~0x3FFF) == 0) {
+			dst[offset] = (byte) (value | 0x80);
+			dst[offset + 1] = (byte) (value >>> 7);
+			return offset + 2;
+		}
+		while ((value & ~0x7F) != 0) {
+			dst[offset++] = (byte) (value | 0x80);
+			value >>>= 7;
+		}
+		dst[offset++] = (byte) value;
+		return offset;
+	}
+
+	/**
+	 * Writes the value as an unsigned LEB128 variable length integer.
+	 */
+	public static void putVarInt(ByteBuffer dst, int value) {
+		if ((value & ~0x7F) == 0) {
+			dst.put((byte) value);
+			return;
+		}
+		if ((value & ~0x3FFF) == 0) {
+			dst.put((byte) (value | 0x80));
+			dst.put((byte) (value >>> 7));
+			return;
+		}
+		while ((value & ~0x7F) != 0) {
+			dst.put((byte) (value | 0x80));
+			value >>>= 7;
+		}
+		dst.put((byte) value);
+	}
+
+	/**
+	 * Writes the given range of values as variable length integers,
+	 * optionally zigzag encoding each first.
+	 * 
+	 * @return the offset after the last byte written
+	 */
+	public static int putVarIntArray(byte[] dst, int offset, int[] values, int start, int length, boolean zigZag) {
+		final int end = start + length;
+		for (int i = start; i < end; ++i) {
+			offset = putVarInt(dst, offset, zigZag ? encodeZigZag(values[i]) : values[i]);
+		}
+		return offset;
+	}
+
+	/**
+	 * Writes the given range of values as variable length integers,
+	 * optionally zigzag encoding each first.
+	 */
+	public static void putVarIntArray(ByteBuffer dst, int[] values, int start, int length, boolean zigZag) {
+		final int end = start + length;
+		for (int i = start; i < end; ++i) {
+			putVarInt(dst, zigZag ? encodeZigZag(values[i]) : values[i]);
+		}
+	}
+
+	/**
+	 * Reads an unsigned LEB128 variable length integer. Only the shortest
+	 * encoding of each value is accepted, so the next value always starts
+	 * {@link #varIntSize(int)} bytes later.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the value is not in its shortest encoding or runs
+	 *             past 5 bytes
+	 */
+	public static int getVarInt(byte[] src, int offset) {
+		final int b0 = src[offset];
+		if (b0 >= 0) {
+			return b0;
+		}
+		final int b1 = src[offset + 1];
+		if (b1 >= 0) {
+			checkLastByte(b1, 7, 32);
+			return b0 & 0x7F | b1 << 7;
+		}
+		int value = b0 & 0x7F | (b1 & 0x7F) << 7;
+		for (int shift = 14, i = offset + 2;; shift += 7, ++i) {
+			if (shift >= 32) {
+				throw new IllegalArgumentException("Malformed variable length integer.");
+			}
+			final int b = src[i];
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				checkLastByte(b, shift, 32);
+				return value;
+			}
+		}
+	}
+
+	/**
+	 * Reads an unsigned LEB128 variable length integer.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the value is not in its shortest encoding or runs
+	 *             past 5 bytes
+	 */
+	public static int getVarInt(ByteBuffer src) {
+		final int b0 = src.get();
+		if (b0 >= 0) {
+			return b0;
+		}
+		int value = b0 & 0x7F;
+		for (int shift = 7;; shift += 7) {
+			if (shift >= 32) {
+				throw new IllegalArgumentException("Malformed variable length integer.");
+			}
+			final int b = src.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				checkLastByte(b, shift, 32);
+				return value;
+			}
+		}
 	}
 
-	private int uint(byte b, int lsft) {
-		return (b & 0xFF) << lsft;
+	/**
+	 * Reads variable length integers into the given range of the array,
+	 * optionally zigzag decoding each.
+	 * 
+	 * @return the offset after the last byte read
+	 * @throws IllegalArgumentException
+	 *             if a value is not in its shortest encoding or runs
+	 *             past 5 bytes
+	 */
+	public static int getVarIntArray(byte[] src, int offset, int[] dst, int start, int length, boolean zigZag) {
+		final int end = start + length;
+		for (int i = start; i < end; ++i) {
+			int value = src[offset++];
+			if (value < 0) {
+				value &= 0x7F;
+				for (int shift = 7;; shift += 7) {
+					if (shift >= 32) {
+						throw new IllegalArgumentException("Malformed variable length integer.");
+					}
+					final int b = src[offset++];
+					value |= (b & 0x7F) << shift;
+					if (b >= 0) {
+						checkLastByte(b, shift, 32);
+						break;
+					}
+				}
+			}
+			dst[i] = zigZag ? decodeZigZag(value) : value;
+		}
+		return offset;
 	}
 
-	private long ulong(byte b, long lsft) {
-		return (b & 0xFFL) << lsft;
+	/**
+	 * Reads variable length integers into the given range of the array,
+	 * optionally zigzag decoding each.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if a value is not in its shortest encoding or runs
+	 *             past 5 bytes
+	 */
+	public static void getVarIntArray(ByteBuffer src, int[] dst, int start, int length, boolean zigZag) {
+		final int end = start + length;
+		for (int i = start; i < end; ++i) {
+			final int value = getVarInt(src);
+			dst[i] = zigZag ? decodeZigZag(value) : value;
+		}
+	}
+
+	/**
+	 * Maps signed values to unsigned ones so that small negative values
+	 * encode as short variable length integers.
+	 */
+	public static long encodeZigZag(long value) {
+		return value << 1 ^ value >> 63;
+	}
+
+	/**
+	 * Reverses {@link #encodeZigZag(long)}.
+	 */
+	public static long decodeZigZag(long value) {
+		return value >>> 1 ^ -(value & 1);
+	}
+
+	/**
+	 * @return how many bytes the value takes as an unsigned LEB128 variable
+	 *         length integer, 1 to 10
+	 */
+	public static int varLongSize(long value) {
+		return (64 - Long.numberOfLeadingZeros(value | 1) + 6) / 7;
+	}
+
+	/**
+	 * @return how many bytes the given range of values takes as variable
+	 *         length integers
+	 */
+	public static long varLongSize(long[] values, int start, int length, boolean zigZag) {
+		final int end = start + length;
+		long size = 0;
+		for (int i = start; i < end; ++i) {
+			size += varLongSize(zigZag ? encodeZigZag(values[i]) : values[i]);
+		}
+		return size;
+	}
+
+	/**
+	 * Writes the value as an unsigned LEB128 variable length integer.
+	 * 
+	 * @return the offset after the last byte written
+	 */
+	public static int putVarLong(byte[] dst, int offset, long value) {
+		if ((value & ~0x7FL) == 0) {
+			dst[offset] = (byte) value;
+			return offset + 1;
+		}
+		if ((value & ~0x3FFFL) == 0) {
+			dst[offset] = (byte) (value | 0x80);
+			dst[offset + 1] = (byte) (value >>> 7);
+			return offset + 2;
+		}
+		while ((value & ~0x7FL) != 0) {
+			dst[offset++] = (byte) (value | 0x80);
+			value >>>= 7;
+		}
+		dst[offset++] = (byte) value;
+		return offset;
+	}
+
+	/**
+	 * Writes the value as an unsigned LEB128 variable length integer.
+	 */
+	public static void putVarLong(ByteBuffer dst, long value) {
+		if ((value & ~0x7FL) == 0) {
+			dst.put((byte) value);
+			return;
+		}
+		if ((value & ~0x3FFFL) == 0) {
+			dst.put((byte) (value | 0x80));
+			dst.put((byte) (value >>> 7));
+			return;
+		}
+		while ((value & ~0x7FL) != 0) {
+			dst.put((byte) (value | 0x80));
+			value >>>= 7;
+		}
+		dst.put((byte) value);
+	}
+
+	/**
+	 * Writes the given range of values as variable length integers,
+	 * optionally zigzag encoding each first.
+	 * 
+	 * @return the offset after the last byte written
+	 */
+	public static int putVarLongArray(byte[] dst, int offset, long[] values, int start, int length, boolean zigZag) {
+		final int end = start + length;
+		for (int i = start; i < end; ++i) {
+			offset = putVarLong(dst, offset, zigZag ? encodeZigZag(values[i]) : values[i]);
+		}
+		return offset;
+	}
+
+	/**
+	 * Writes the given range of values as variable length integers,
+	 * optionally zigzag encoding each first.
+	 */
+	public static void putVarLongArray(ByteBuffer dst, long[] values, int start, int length, boolean zigZag) {
+		final int end = start + length;
+		for (int i = start; i < end; ++i) {
+			putVarLong(dst, zigZag ? encodeZigZag(values[i]) : values[i]);
+		}
+	}
+
+	/**
+	 * Reads an unsigned LEB128 variable length integer. Only the shortest
+	 * encoding of each value is accepted, so the next value always starts
+	 * {@link #varLongSize(long)} bytes later.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the value is not in its shortest encoding or runs
+	 *             past 10 bytes
+	 */
+	public static long getVarLong(byte[] src, int offset) {
+		final long b0 = src[offset];
+		if (b0 >= 0) {
+			return b0;
+		}
+		final long b1 = src[offset + 1];
+		if (b1 >= 0) {
+			checkLastByte(b1, 7, 64);
+			return b0 & 0x7F | b1 << 7;
+		}
+		long value = b0 & 0x7F | (b1 & 0x7F) << 7;
+		for (int shift = 14, i = offset + 2;; shift += 7, ++i) {
+			if (shift >= 64) {
+				throw new IllegalArgumentException("Malformed variable length integer.");
+			}
+			final long b = src[i];
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				checkLastByte(b, shift, 64);
+				return value;
+			}
+		}
+	}
+
+	/**
+	 * Reads an unsigned LEB128 variable length integer.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the value is not in its shortest encoding or runs
+	 *             past 10 bytes
+	 */
+	public static long getVarLong(ByteBuffer src) {
+		final long b0 = src.get();
+		if (b0 >= 0) {
+			return b0;
+		}
+		long value = b0 & 0x7F;
+		for (int shift = 7;; shift += 7) {
+			if (shift >= 64) {
+				throw new IllegalArgumentException("Malformed variable length integer.");
+			}
+			final long b = src.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				checkLastByte(b, shift, 64);
+				return value;
+			}
+		}
+	}
+
+	/**
+	 * Reads variable length integers into the given range of the array,
+	 * optionally zigzag decoding each.
+	 * 
+	 * @return the offset after the last byte read
+	 * @throws IllegalArgumentException
+	 *             if a value is not in its shortest encoding or runs
+	 *             past 10 bytes
+	 */
+	public static int getVarLongArray(byte[] src, int offset, long[] dst, int start, int length, boolean zigZag) {
+		final int end = start + length;
+		for (int i = start; i < end; ++i) {
+			long value = src[offset++];
+			if (value < 0) {
+				value &= 0x7F;
+				for (int shift = 7;; shift += 7) {
+					if (shift >= 64) {
+						throw new IllegalArgumentException("Malformed variable length integer.");
+					}
+					final long b = src[offset++];
+					value |= (b & 0x7F) << shift;
+					if (b >= 0) {
+						checkLastByte(b, shift, 64);
+						break;
+					}
+				}
+			}
+			dst[i] = zigZag ? decodeZigZag(value) : value;
+		}
+		return offset;
+	}
+
+	/**
+	 * Reads variable length integers into the given range of the array,
+	 * optionally zigzag decoding each.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if a value is not in its shortest encoding or runs
+	 *             past 10 bytes
+	 */
+	public static void getVarLongArray(ByteBuffer src, long[] dst, int start, int length, boolean zigZag) {
+		final int end = start + length;
+		for (int i = start; i < end; ++i) {
+			final long value = getVarLong(src);
+			dst[i] = zigZag ? decodeZigZag(value) : value;
+		}
 	}
-}
\ No newline at end of file
+}
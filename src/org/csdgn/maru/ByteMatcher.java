@@ -0,0 +1,335 @@
+/**
+ * Copyright (c) 2014 Robert Maupin
+ * 
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+package org.csdgn.maru;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Finds any number of byte patterns in a single pass over the data, using the
+ * Aho-Corasick algorithm compiled into a dense state table. Every occurrence
+ * of every pattern is reported, including overlapping ones.
+ * 
+ * <p>
+ * The matcher itself is immutable and may be shared between threads. Data
+ * that arrives in pieces is searched with a {@link Scanner}, which carries
+ * partial matches across the boundaries.
+ * </p>
+ * 
+ * @author Robert Maupin
+ */
+public class ByteMatcher {
+	private static final int INITIAL_STATES = 64;
+	/** the most states whose table still fits in an array */
+	private static final int MAX_STATES = Integer.MAX_VALUE - 8 >> 8;
+
+	/**
+	 * Receives the matches found.
+	 */
+	public static interface Listener {
+		/**
+		 * @param pattern
+		 *            the index of the pattern that matched
+		 * @param position
+		 *            the position of the first byte of the match
+		 * @return <code>true</code> to keep searching, <code>false</code> to
+		 *         stop
+		 */
+		boolean match(int pattern, long position);
+	}
+
+	/**
+	 * Searches data that arrives in pieces, such as from a stream. Positions
+	 * are counted from the first byte given to the scanner.
+	 */
+	public class Scanner {
+		private int state = 0;
+		private long position = 0;
+
+		/**
+		 * @return how many bytes have been scanned
+		 */
+		public long getPosition() {
+			return position;
+		}
+
+		/**
+		 * Forgets all the data scanned so far.
+		 */
+		public void reset() {
+			state = 0;
+			position = 0;
+		}
+
+		/**
+		 * Scans the next piece of the data.
+		 * 
+		 * @return <code>false</code> if the listener stopped the search
+		 */
+		public boolean scan(byte[] data, int off, int len, Listener listener) {
+			final int[] table = ByteMatcher.this.table;
+			final int[] output = ByteMatcher.this.output;
+			final long base = position - off;
+			final int end = off + len;
+			int state = this.state;
+			for (int i = off; i < end; ++i) {
+				state = table[state << 8 | data[i] & 0xFF];
+				if (output[state] >= 0 && !report(state, base + i, listener)) {
+					this.state = state;
+					position = base + i + 1;
+					return false;
+				}
+			}
+			this.state = state;
+			position = base + end;
+			return true;
+		}
+
+		/**
+		 * Scans the remaining bytes of the buffer as the next piece of the
+		 * data. The buffer is left after the last byte scanned.
+		 * 
+		 * @return <code>false</code> if the listener stopped the search
+		 */
+		public boolean scan(ByteBuffer data, Listener listener) {
+			final int pos = data.position();
+			final int end = data.limit();
+			if (data.hasArray()) {
+				final int off = data.arrayOffset();
+				final long start = position;
+				final boolean going = scan(data.array(), off + pos, end - pos, listener);
+				data.position(pos + (int) (position - start));
+				return going;
+			}
+			final int[] table = ByteMatcher.this.table;
+			final int[] output = ByteMatcher.this.output;
+			final long base = position - pos;
+			int state = this.state;
+			for (int i = pos; i < end; ++i) {
+				state = table[state << 8 | data.get(i) & 0xFF];
+				if (output[state] >= 0 && !report(state, base + i, listener)) {
+					this.state = state;
+					position = base + i + 1;
+					data.position(i + 1);
+					return false;
+				}
+			}
+			this.state = state;
+			position = base + end;
+			data.position(end);
+			return true;
+		}
+	}
+
+	/** the transition table, 256 entries for each state */
+	private final int[] table;
+	/** the first output entry of each state, or -1 */
+	private final int[] output;
+	/** the pattern of each output entry */
+	private final int[] outputPattern;
+	/** the next output entry of each output entry, or -1 */
+	private final int[] outputNext;
+	private final int[] lengths;
+
+	/**
+	 * @param patterns
+	 *            the patterns to find, none of them empty
+	 */
+	public ByteMatcher(byte[]... patterns) {
+		long total = 1;
+		for (byte[] pattern : patterns) {
+			if (pattern.length == 0) {
+				throw new IllegalArgumentException("Patterns cannot be empty.");
+			}
+			total += pattern.length;
+		}
+		lengths = new int[patterns.length];
+		/* grow the table as states are added, shared prefixes need far fewer */
+		int capacity = (int) Math.min(total, INITIAL_STATES);
+		int[] table = new int[capacity << 8];
+		int[] own = new int[capacity];
+		Arrays.fill(table, -1);
+		Arrays.fill(own, -1);
+		/* build the trie */
+		int states = 1;
+		final int[] ownNext = new int[patterns.length];
+		for (int p = 0; p < patterns.length; ++p) {
+			final byte[] pattern = patterns[p];
+			lengths[p] = pattern.length;
+			int state = 0;
+			for (byte b : pattern) {
+				final int index = state << 8 | b & 0xFF;
+				if (table[index] == -1) {
+					if (states == capacity) {
+						if (capacity == MAX_STATES) {
+							throw new IllegalArgumentException("The patterns need too many states.");
+						}
+						capacity = (int) Math.min(Math.min(total, MAX_STATES), (long) capacity << 1);
+						final int filled = table.length;
+						table = Arrays.copyOf(table, capacity << 8);
+						Arrays.fill(table, filled, table.length, -1);
+						own = Arrays.copyOf(own, capacity);
+						Arrays.fill(own, states, capacity, -1);
+					}
+					table[index] = states++;
+				}
+				state = table[index];
+			}
+			ownNext[p] = own[state];
+			own[state] = p;
+		}
+		if (states < capacity) {
+			table = Arrays.copyOf(table, states << 8);
+		}
+		/* fill in the failure transitions breadth first */
+		output = new int[states];
+		outputPattern = new int[patterns.length];
+		outputNext = new int[outputPattern.length];
+		int entries = 0;
+		final int[] fail = new int[states];
+		final int[] queue = new int[states];
+		int head = 0;
+		int tail = 0;
+		output[0] = -1;
+		for (int c = 0; c < 256; ++c) {
+			final int child = table[c];
+			if (child == -1) {
+				table[c] = 0;
+			} else {
+				fail[child] = 0;
+				queue[tail++] = child;
+			}
+		}
+		while (head < tail) {
+			final int state = queue[head++];
+			/* this state's own patterns, then those of its failure state */
+			int next = output[fail[state]];
+			for (int p = own[state]; p != -1; p = ownNext[p]) {
+				outputPattern[entries] = p;
+				outputNext[entries] = next;
+				next = entries++;
+			}
+			output[state] = next;
+			final int row = state << 8;
+			final int failRow = fail[state] << 8;
+			for (int c = 0; c < 256; ++c) {
+				final int child = table[row | c];
+				if (child == -1) {
+					table[row | c] = table[failRow | c];
+				} else {
+					fail[child] = table[failRow | c];
+					queue[tail++] = child;
+				}
+			}
+		}
+		this.table = table;
+	}
+
+	/**
+	 * @return if any pattern occurs in the given bytes
+	 */
+	public boolean containsAny(byte[] data, int off, int len) {
+		final int end = off + len;
+		int state = 0;
+		for (int i = off; i < end; ++i) {
+			state = table[state << 8 | data[i] & 0xFF];
+			if (output[state] >= 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Reports every match in the given bytes. Positions are indexes into the
+	 * array.
+	 * 
+	 * @return <code>false</code> if the listener stopped the search
+	 */
+	public boolean find(byte[] data, int off, int len, Listener listener) {
+		final Scanner scanner = new Scanner();
+		scanner.position = off;
+		return scanner.scan(data, off, len, listener);
+	}
+
+	/**
+	 * Reports every match in the remaining bytes of the buffer. Positions are
+	 * indexes into the buffer. The buffer is left after the last byte
+	 * scanned.
+	 * 
+	 * @return <code>false</code> if the listener stopped the search
+	 */
+	public boolean find(ByteBuffer data, Listener listener) {
+		final Scanner scanner = new Scanner();
+		scanner.position = data.position();
+		return scanner.scan(data, listener);
+	}
+
+	/**
+	 * Reports every match in the stream, reading it to the end unless the
+	 * listener stops the search. Positions are counted from the current
+	 * position of the stream. The stream is not closed.
+	 * 
+	 * @return <code>false</code> if the listener stopped the search
+	 */
+	public boolean find(InputStream stream, Listener listener) throws IOException {
+		final Scanner scanner = new Scanner();
+		final byte[] buffer = new byte[8192];
+		int r = 0;
+		while ((r = stream.read(buffer, 0, buffer.length)) != -1) {
+			if (!scanner.scan(buffer, 0, r, listener)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of patterns
+	 */
+	public int getPatternCount() {
+		return lengths.length;
+	}
+
+	/**
+	 * @return a new scanner for searching data in pieces
+	 */
+	public Scanner newScanner() {
+		return new Scanner();
+	}
+
+	/**
+	 * Reports all the patterns ending at the given position.
+	 */
+	private boolean report(int state, long last, Listener listener) {
+		for (int e = output[state]; e != -1; e = outputNext[e]) {
+			final int p = outputPattern[e];
+			if (!listener.match(p, last - lengths[p] + 1)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
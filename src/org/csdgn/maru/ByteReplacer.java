@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2014 Robert Maupin
+ * 
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+package org.csdgn.maru;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Replaces every occurrence of one byte sequence with another. The skip table
+ * for the search is built once, so a replacer can be reused across many
+ * inputs, and may be shared between threads.
+ * 
+ * <p>
+ * Occurrences are found from left to right and do not overlap, the same as
+ * {@link Bytes#replace(byte[], byte[], byte[])}.
+ * </p>
+ * 
+ * @author Robert Maupin
+ */
+public class ByteReplacer {
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+	private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	private final byte[] needle;
+	private final byte[] replacement;
+	private final int[] skip;
+
+	/**
+	 * @param needle
+	 *            the bytes to find, cannot be empty
+	 * @param replacement
+	 *            the bytes to put in their place
+	 */
+	public ByteReplacer(byte[] needle, byte[] replacement) {
+		if (needle.length == 0) {
+			throw new IllegalArgumentException("Needle cannot be empty.");
+		}
+		this.needle = needle.clone();
+		this.replacement = replacement.clone();
+		this.skip = Bytes.skipTable(this.needle);
+	}
+
+	/**
+	 * Finds the next occurrence of the needle between start and end.
+	 */
+	private int find(byte[] data, int start, int end) {
+		return Bytes.indexOf(data, start, end, needle, skip);
+	}
+
+	/**
+	 * @return the number of occurrences in the given bytes
+	 */
+	public int count(byte[] data, int off, int len) {
+		final int end = off + len;
+		int count = 0;
+		for (int i = off; (i = find(data, i, end)) != -1; i += needle.length) {
+			++count;
+		}
+		return count;
+	}
+
+	/**
+	 * @return a new array with every occurrence replaced
+	 */
+	public byte[] replace(byte[] data) {
+		return replace(data, 0, data.length);
+	}
+
+	/**
+	 * @return a new array of the given range with every occurrence replaced
+	 */
+	public byte[] replace(byte[] data, int off, int len) {
+		final int end = off + len;
+		int[] found = new int[16];
+		int count = 0;
+		for (int i = off; (i = find(data, i, end)) != -1; i += needle.length) {
+			if (count == found.length) {
+				found = Arrays.copyOf(found, count << 1);
+			}
+			found[count++] = i;
+		}
+		final long size = len + (long) count * (replacement.length - needle.length);
+		if (size > MAX_ARRAY_SIZE) {
+			throw new OutOfMemoryError("Replaced array is too large.");
+		}
+		final byte[] output = new byte[(int) size];
+		int start = off;
+		int index = 0;
+		for (int n = 0; n < count; ++n) {
+			final int length = found[n] - start;
+			System.arraycopy(data, start, output, index, length);
+			index += length;
+			System.arraycopy(replacement, 0, output, index, replacement.length);
+			index += replacement.length;
+			start = found[n] + needle.length;
+		}
+		System.arraycopy(data, start, output, index, end - start);
+		return output;
+	}
+
+	/**
+	 * Copies the input stream to the output stream with every occurrence
+	 * replaced, holding only a small buffer in memory. Neither stream is
+	 * closed.
+	 * 
+	 * @return the number of occurrences replaced
+	 */
+	public long replace(InputStream input, OutputStream output) throws IOException {
+		return replace(input, output, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Copies the input stream to the output stream with every occurrence
+	 * replaced, reading through a buffer of about the given size. Neither
+	 * stream is closed.
+	 * 
+	 * @return the number of occurrences replaced
+	 */
+	public long replace(InputStream input, OutputStream output, int bufferSize) throws IOException {
+		final byte[] buffer = new byte[Math.max(bufferSize, needle.length << 1)];
+		final int keep = needle.length - 1;
+		long count = 0;
+		int length = 0;
+		int r = 0;
+		do {
+			r = input.read(buffer, length, buffer.length - length);
+			if (r > 0) {
+				length += r;
+			}
+			int start = 0;
+			for (int i = 0; (i = find(buffer, i, length)) != -1; i += needle.length) {
+				output.write(buffer, start, i - start);
+				output.write(replacement);
+				start = i + needle.length;
+				++count;
+			}
+			/* the last bytes may be the start of an occurrence cut in two */
+			final int safe = r == -1 ? length : Math.max(start, length - keep);
+			output.write(buffer, start, safe - start);
+			length -= safe;
+			System.arraycopy(buffer, safe, buffer, 0, length);
+		} while (r != -1);
+		return count;
+	}
+}
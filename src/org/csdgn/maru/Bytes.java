@@ -22,16 +22,108 @@
  */
 package org.csdgn.maru;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
 /**
  * 
  * @author Robert Maupin
  */
 public class Bytes {
+	private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final long ONES = 0x0101010101010101L;
+	private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+	/**
+	 * Below this many bytes a skip table costs more than it saves.
+	 */
+	private static final int SKIP_TABLE_MINIMUM = 256;
+	private static final char[] HEX_LOWER = "0123456789abcdef".toCharArray();
+	private static final char[] HEX_UPPER = "0123456789ABCDEF".toCharArray();
+	private static final byte[] HEX_VALUES = new byte[128];
+	/**
+	 * How many bytes appendHex encodes at a time.
+	 */
+	private static final int HEX_CHUNK = 256;
+
+	static {
+		Arrays.fill(HEX_VALUES, (byte) -1);
+		for (int i = 0; i < 16; ++i) {
+			HEX_VALUES[HEX_LOWER[i]] = (byte) i;
+			HEX_VALUES[HEX_UPPER[i]] = (byte) i;
+		}
+	}
+
+	/**
+	 * Splits an array range, reporting each byte as a signed int.
+	 */
+	private static final class ByteSpliterator implements Spliterator.OfInt {
+		private static final int CHARACTERISTICS = Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED
+				| Spliterator.IMMUTABLE;
+		private final byte[] source;
+		private int index;
+		private final int end;
+
+		ByteSpliterator(byte[] source, int index, int end) {
+			this.source = source;
+			this.index = index;
+			this.end = end;
+		}
+
+		@Override
+		public int characteristics() {
+			return CHARACTERISTICS;
+		}
+
+		@Override
+		public long estimateSize() {
+			return end - index;
+		}
+
+		@Override
+		public void forEachRemaining(IntConsumer action) {
+			final byte[] source = this.source;
+			final int end = this.end;
+			int i = index;
+			index = end;
+			for (; i < end; ++i) {
+				action.accept(source[i]);
+			}
+		}
+
+		@Override
+		public boolean tryAdvance(IntConsumer action) {
+			if (index < end) {
+				final int i = index++;
+				action.accept(source[i]);
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public Spliterator.OfInt trySplit() {
+			final int start = index;
+			final int middle = start + end >>> 1;
+			if (start >= middle) {
+				return null;
+			}
+			index = middle;
+			return new ByteSpliterator(source, start, middle);
+		}
+	}
+
 	public static byte[] add(byte[] array, byte element) {
 		if (array == null) {
 			return null;
@@ -45,6 +137,40 @@ public class Bytes {
 		return array2;
 	}
 
+	/**
+	 * @return a spliterator over the bytes of the array as signed ints, which
+	 *         does not box
+	 */
+	public static Spliterator.OfInt getSpliterator(byte[] array) {
+		return new ByteSpliterator(array, 0, array.length);
+	}
+
+	/**
+	 * @return a spliterator over the given range of the array as signed ints,
+	 *         which does not box
+	 */
+	public static Spliterator.OfInt getSpliterator(byte[] array, int from, int to) {
+		if (from < 0 || to > array.length || from > to) {
+			throw new IndexOutOfBoundsException();
+		}
+		return new ByteSpliterator(array, from, to);
+	}
+
+	/**
+	 * @return a sequential stream of the bytes of the array as signed ints
+	 */
+	public static IntStream getStream(byte[] array) {
+		return StreamSupport.intStream(getSpliterator(array), false);
+	}
+
+	/**
+	 * @return a sequential stream of the given range of the array as signed
+	 *         ints
+	 */
+	public static IntStream getStream(byte[] array, int from, int to) {
+		return StreamSupport.intStream(getSpliterator(array, from, to), false);
+	}
+
 	public static final Iterable<Byte> getIterable(final byte[] array) {
 		return new Iterable<Byte>() {
 			@Override
@@ -99,46 +225,211 @@ public class Bytes {
 		return array2;
 	}
 	
-	private static int hexToByte(char c1, char c2) {
-		// nibble to numeric
-		int n0 = c1 - 48;
-		int n1 = c2 - 48;
-		if (n0 > 9) {
-			n0 -= 7;
+	/**
+	 * @return the value of the hex digit, or -1 if it is not one
+	 */
+	private static int hexDigit(char c) {
+		return c < HEX_VALUES.length ? HEX_VALUES[c] : -1;
+	}
+
+	/**
+	 * Finds the hex digits in the string, skipping surrounding whitespace and
+	 * any 0x prefix.
+	 * 
+	 * @return the start and end of the digits
+	 */
+	private static long hexBounds(CharSequence hex) {
+		int start = 0;
+		int end = hex.length();
+		while (start < end && hex.charAt(start) <= ' ') {
+			++start;
+		}
+		while (end > start && hex.charAt(end - 1) <= ' ') {
+			--end;
 		}
-		if (n0 > 15) {
-			n0 -= 32;
+		if (end - start >= 2 && hex.charAt(start) == '0' && (hex.charAt(start + 1) | 0x20) == 'x') {
+			start += 2;
 		}
-		if (n1 > 9) {
-			n1 -= 7;
+		if ((end - start & 1) != 0) {
+			throw new IllegalArgumentException("Hex string has an odd number of digits.");
 		}
-		if (n1 > 15) {
-			n1 -= 32;
+		return (long) start << 32 | end;
+	}
+
+	/**
+	 * Decodes the hex digits between start and end into the array.
+	 */
+	private static void hexToBytes(CharSequence hex, int start, int end, byte[] dst, int offset) {
+		for (int i = start; i < end; i += 2) {
+			final int high = hexDigit(hex.charAt(i));
+			final int low = hexDigit(hex.charAt(i + 1));
+			if ((high | low) < 0) {
+				throw new IllegalArgumentException("Invalid hex digit near index " + i + ".");
+			}
+			dst[offset++] = (byte) (high << 4 | low);
 		}
+	}
 
-		return n0 << 4 | n1;
+	/**
+	 * Decodes a string of hex digits. Surrounding whitespace and a 0x prefix
+	 * are ignored.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if there is an odd number of digits or an invalid one
+	 */
+	public static byte[] hexToBytes(CharSequence hex) {
+		final long bounds = hexBounds(hex);
+		final int start = (int) (bounds >>> 32);
+		final int end = (int) bounds;
+		final byte[] array = new byte[end - start >> 1];
+		hexToBytes(hex, start, end, array, 0);
+		return array;
 	}
 
+	/**
+	 * Kept so code compiled against the String version still links.
+	 * 
+	 * @see #hexToBytes(CharSequence)
+	 */
 	public static byte[] hexToBytes(String hex) {
-		hex = hex.trim();
-		if (hex.charAt(1) == 'x') {
-			hex = hex.substring(2);
+		return hexToBytes((CharSequence) hex);
+	}
+
+	/**
+	 * Decodes a string of hex digits into the array at the given offset.
+	 * Surrounding whitespace and a 0x prefix are ignored.
+	 * 
+	 * @return the number of bytes decoded
+	 * @throws IllegalArgumentException
+	 *             if there is an odd number of digits or an invalid one
+	 */
+	public static int hexToBytes(CharSequence hex, byte[] dst, int offset) {
+		final long bounds = hexBounds(hex);
+		final int start = (int) (bounds >>> 32);
+		final int end = (int) bounds;
+		final int length = end - start >> 1;
+		if (length > dst.length - offset) {
+			throw new IndexOutOfBoundsException();
+		}
+		hexToBytes(hex, start, end, dst, offset);
+		return length;
+	}
+
+	/**
+	 * Decodes a string of hex digits into the buffer. Surrounding whitespace
+	 * and a 0x prefix are ignored.
+	 * 
+	 * @return the number of bytes decoded
+	 * @throws IllegalArgumentException
+	 *             if there is an odd number of digits or an invalid one
+	 */
+	public static int hexToBytes(CharSequence hex, ByteBuffer dst) {
+		final long bounds = hexBounds(hex);
+		final int start = (int) (bounds >>> 32);
+		final int end = (int) bounds;
+		final int length = end - start >> 1;
+		if (length > dst.remaining()) {
+			throw new BufferOverflowException();
+		}
+		if (dst.hasArray()) {
+			hexToBytes(hex, start, end, dst.array(), dst.arrayOffset() + dst.position());
+			dst.position(dst.position() + length);
+			return length;
+		}
+		for (int i = start; i < end; i += 2) {
+			final int high = hexDigit(hex.charAt(i));
+			final int low = hexDigit(hex.charAt(i + 1));
+			if ((high | low) < 0) {
+				throw new IllegalArgumentException("Invalid hex digit near index " + i + ".");
+			}
+			dst.put((byte) (high << 4 | low));
 		}
-		// consume two characters at a time...
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		Iterator<Character> it = Strings.getIterator(hex);
-		while (it.hasNext()) {
-			baos.write(hexToByte(it.next(), it.next()));
+		return length;
+	}
+
+	/**
+	 * Encodes the bytes into the character array as hex digits.
+	 */
+	private static void bytesToHex(byte[] array, int off, int len, char[] dst, int index, char[] digits) {
+		final int end = off + len;
+		for (int i = off; i < end; ++i) {
+			final int b = array[i];
+			dst[index++] = digits[b >> 4 & 0xF];
+			dst[index++] = digits[b & 0xF];
 		}
-		return baos.toByteArray();
 	}
-	
+
+	/**
+	 * @return the bytes as lower case hex digits
+	 */
 	public static String bytesToHex(byte[] array) {
-		StringBuilder sb = new StringBuilder();
-		for(byte b : array) {
-			sb.append(String.format("%02x",b));
+		return bytesToHex(array, 0, array.length, false);
+	}
+
+	/**
+	 * @return the bytes as hex digits
+	 */
+	public static String bytesToHex(byte[] array, boolean upperCase) {
+		return bytesToHex(array, 0, array.length, upperCase);
+	}
+
+	/**
+	 * @return the given range of bytes as hex digits
+	 */
+	public static String bytesToHex(byte[] array, int off, int len, boolean upperCase) {
+		final char[] chars = new char[len << 1];
+		bytesToHex(array, off, len, chars, 0, upperCase ? HEX_UPPER : HEX_LOWER);
+		return new String(chars);
+	}
+
+	/**
+	 * Encodes the remaining bytes of the buffer as hex digits. The buffer is
+	 * left at its limit.
+	 * 
+	 * @return the bytes as hex digits
+	 */
+	public static String bytesToHex(ByteBuffer buffer, boolean upperCase) {
+		final char[] digits = upperCase ? HEX_UPPER : HEX_LOWER;
+		final char[] chars = new char[buffer.remaining() << 1];
+		if (buffer.hasArray()) {
+			bytesToHex(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), chars, 0, digits);
+			buffer.position(buffer.limit());
+		} else {
+			for (int i = 0; i < chars.length; i += 2) {
+				final int b = buffer.get();
+				chars[i] = digits[b >> 4 & 0xF];
+				chars[i + 1] = digits[b & 0xF];
+			}
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Appends the given range of bytes to the target as hex digits, without
+	 * building an intermediate string.
+	 */
+	public static void appendHex(Appendable out, byte[] array, int off, int len, boolean upperCase)
+			throws IOException {
+		final char[] digits = upperCase ? HEX_UPPER : HEX_LOWER;
+		if (out instanceof StringBuilder) {
+			final StringBuilder sb = (StringBuilder) out;
+			sb.ensureCapacity(sb.length() + (len << 1));
+			final int end = off + len;
+			for (int i = off; i < end; ++i) {
+				final int b = array[i];
+				sb.append(digits[b >> 4 & 0xF]).append(digits[b & 0xF]);
+			}
+			return;
+		}
+		final char[] chars = new char[Math.min(len, HEX_CHUNK) << 1];
+		final CharBuffer wrapped = CharBuffer.wrap(chars);
+		while (len > 0) {
+			final int n = Math.min(len, HEX_CHUNK);
+			bytesToHex(array, off, n, chars, 0, digits);
+			out.append(wrapped, 0, n << 1);
+			off += n;
+			len -= n;
 		}
-		return sb.toString();
 	}
 
 	public static boolean contains(byte[] array, byte value) {
@@ -149,10 +440,69 @@ public class Bytes {
 		return indexOf(array, value) != -1;
 	}
 
+	/**
+	 * Sets the high bit of each byte of the word that is zero, and no others.
+	 */
+	private static long zeroBytes(long word) {
+		final long t = (word & LOW_BITS) + LOW_BITS;
+		return ~(t | word | LOW_BITS);
+	}
+
+	/**
+	 * Builds the Horspool skip table for searching forward.
+	 */
+	static int[] skipTable(byte[] needle) {
+		final int[] skip = new int[256];
+		final int last = needle.length - 1;
+		Arrays.fill(skip, needle.length);
+		for (int i = 0; i < last; ++i) {
+			skip[needle[i] & 0xFF] = last - i;
+		}
+		return skip;
+	}
+
+	/**
+	 * Horspool search for the needle between start and end of the array.
+	 */
+	static int indexOf(byte[] array, int start, int end, byte[] needle, int[] skip) {
+		final int last = needle.length - 1;
+		final byte tail = needle[last];
+		for (int i = start; i <= end - needle.length;) {
+			final byte b = array[i + last];
+			if (b == tail && regionMatches(array, i, needle, last)) {
+				return i;
+			}
+			i += skip[b & 0xFF];
+		}
+		return -1;
+	}
+
+	/**
+	 * @return if the first len bytes of the needle are at the index
+	 */
+	private static boolean regionMatches(byte[] array, int index, byte[] needle, int len) {
+		return regionMatches(array, index, needle, 0, len);
+	}
+
+	/**
+	 * @return if len bytes of the needle from its offset are at the index
+	 */
+	private static boolean regionMatches(byte[] array, int index, byte[] needle, int offset, int len) {
+		for (int j = 0; j < len; ++j) {
+			if (array[index + j] != needle[offset + j]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	public static int indexOf(byte[] array, byte value) {
 		return indexOf(array, value, 0);
 	}
 
+	/**
+	 * Finds the given byte, comparing 8 bytes at a time.
+	 */
 	public static int indexOf(byte[] array, byte value, int start) {
 		if (array == null) {
 			return -1;
@@ -163,7 +513,15 @@ public class Bytes {
 		if (start < 0) {
 			start = 0;
 		}
-		for (int i = start; i < array.length; ++i) {
+		final long pattern = (value & 0xFFL) * ONES;
+		int i = start;
+		for (; i <= array.length - 8; i += 8) {
+			final long found = zeroBytes((long) LONGS.get(array, i) ^ pattern);
+			if (found != 0) {
+				return i + (Long.numberOfTrailingZeros(found) >>> 3);
+			}
+		}
+		for (; i < array.length; ++i) {
 			if (value == array[i]) {
 				return i;
 			}
@@ -175,6 +533,10 @@ public class Bytes {
 		return indexOf(array, value, 0);
 	}
 
+	/**
+	 * Finds the given bytes. Long searches use a Boyer-Moore-Horspool skip
+	 * table, short ones look for the first byte 8 bytes at a time.
+	 */
 	public static int indexOf(byte[] array, byte[] value, int start) {
 		if (array == null || value == null) {
 			return -1;
@@ -185,14 +547,19 @@ public class Bytes {
 		if (start < 0) {
 			start = 0;
 		}
-
-		loop: for (int i = start; i < array.length - value.length + 1; ++i) {
-			for (int j = 0; j < value.length; j++) {
-				if (array[i + j] != value[j]) {
-					continue loop;
-				}
+		if (value.length > 2 && array.length - start >= SKIP_TABLE_MINIMUM) {
+			return indexOf(array, start, array.length, value, skipTable(value));
+		}
+		final int end = array.length - value.length;
+		final byte first = value[0];
+		for (int i = start; i <= end; ++i) {
+			i = indexOf(array, first, i);
+			if (i == -1 || i > end) {
+				break;
+			}
+			if (regionMatches(array, i, value, value.length)) {
+				return i;
 			}
-			return i;
 		}
 		return -1;
 	}
@@ -220,6 +587,10 @@ public class Bytes {
 		return lastIndexOf(array, value, 0);
 	}
 
+	/**
+	 * Finds the last of the given byte at or after start, comparing 8 bytes at
+	 * a time.
+	 */
 	public static int lastIndexOf(byte[] array, byte value, int start) {
 		if (array == null) {
 			return -1;
@@ -230,7 +601,15 @@ public class Bytes {
 		if (start < 0) {
 			start = 0;
 		}
-		for (int i = array.length - 1; i >= start; --i) {
+		final long pattern = (value & 0xFFL) * ONES;
+		int i = array.length - 8;
+		for (; i >= start; i -= 8) {
+			final long found = zeroBytes((long) LONGS.get(array, i) ^ pattern);
+			if (found != 0) {
+				return i + 7 - (Long.numberOfLeadingZeros(found) >>> 3);
+			}
+		}
+		for (i += 7; i >= start; --i) {
 			if (value == array[i]) {
 				return i;
 			}
@@ -238,16 +617,13 @@ public class Bytes {
 		return -1;
 	}
 
-	/**
-	 * DANGER Untested
-	 */
-
 	public static int lastIndexOf(byte[] array, byte[] value) {
 		return lastIndexOf(array, value, 0);
 	}
 
 	/**
-	 * DANGER Untested
+	 * Finds the last of the given bytes at or after start, with a reversed
+	 * Boyer-Moore-Horspool skip table.
 	 */
 	public static int lastIndexOf(byte[] array, byte[] value, int start) {
 		if (array == null || value == null) {
@@ -259,16 +635,23 @@ public class Bytes {
 		if (start < 0) {
 			start = 0;
 		}
-
-		loop: for (int i = array.length - value.length + 1; i >= start; --i) {
-			for (int j = 0; j < value.length; j++) {
-				if (array[i + j] != value[j]) {
-					continue loop;
-				}
+		final int m = value.length;
+		if (m == 1) {
+			return lastIndexOf(array, value[0], start);
+		}
+		final int[] skip = new int[256];
+		Arrays.fill(skip, m);
+		for (int j = m - 1; j > 0; --j) {
+			skip[value[j] & 0xFF] = j;
+		}
+		final byte head = value[0];
+		for (int i = array.length - m; i >= start;) {
+			final byte b = array[i];
+			if (b == head && regionMatches(array, i + 1, value, 1, m - 1)) {
+				return i;
 			}
-			return i;
+			i -= skip[b & 0xFF];
 		}
-
 		return -1;
 	}
 
@@ -286,26 +669,16 @@ public class Bytes {
 	}
 
 	/**
-	 * Byte array based replace.
+	 * Byte array based replace. Returns a copy of the haystack if the needle
+	 * is null or empty.
+	 * 
+	 * @see ByteReplacer
 	 */
 	public static byte[] replace(final byte[] haystack, final byte[] needle, final byte[] replacement) {
-		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		int start = 0;
-		int n = -1;
-		try {
-			while ((n = indexOf(haystack, needle, start)) != -1) {
-				baos.write(Arrays.copyOfRange(haystack, start, n));
-				baos.write(replacement);
-				start = n + needle.length;
-			}
-			if (start < haystack.length) {
-				baos.write(Arrays.copyOfRange(haystack, start, haystack.length));
-			}
-		} catch (final Exception e) {
-			// we should never ever get here
-			throw new RuntimeException(e.getMessage(), e.getCause());
+		if (needle == null || needle.length == 0) {
+			return clone(haystack);
 		}
-		return baos.toByteArray();
+		return new ByteReplacer(needle, replacement).replace(haystack);
 	}
 
 	public static byte[] reverse(byte[] array) {
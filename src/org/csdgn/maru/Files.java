@@ -39,7 +39,13 @@ import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 
 /**
  * A number of useful static methods to make working with IO much easier.
@@ -50,6 +56,117 @@ import java.nio.charset.Charset;
  */
 public class Files {
 	private static final int IO_BUFFER_SIZE = 16384;
+	private static final long IO_TRANSFER_SIZE = 1L << 24;
+	/**
+	 * Files at least this large are mapped instead of read onto the heap by
+	 * {@link #getFileBuffer(File)}.
+	 */
+	public static final long MAP_THRESHOLD = 1L << 24;
+	/**
+	 * Some virtual machines reserve header words in an array.
+	 */
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+	/**
+	 * Reads the rest of the given channel into an array sized exactly from the
+	 * length of the file when the read begins. If the channel cannot seek (as
+	 * with pipes) or the file reports no length (as some special files do) it
+	 * is read as an indeterminate stream instead.
+	 * 
+	 * @param channel
+	 *            File channel to read from
+	 * @return bytes retrieved from the channel
+	 * @throws IOException
+	 *             if an error occurs, or the file is too large for an array
+	 */
+	public static byte[] get(FileChannel channel) throws IOException {
+		if (channel != null) {
+			final long remaining = remaining(channel);
+			if (remaining > MAX_ARRAY_SIZE) {
+				throw new IOException("File is too large to fit in an array.");
+			}
+			if (remaining <= 0) {
+				return read(channel);
+			}
+			final byte[] data = new byte[(int) remaining];
+			final ByteBuffer buffer = ByteBuffer.wrap(data);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) == -1) {
+					// the file shrank while we were reading it
+					return Arrays.copyOf(data, buffer.position());
+				}
+			}
+			return data;
+		}
+		return null;
+	}
+
+	/**
+	 * @return the bytes left in a channel over a regular file, or -1 if the
+	 *         channel cannot seek or the file reports no length
+	 */
+	private static long remaining(FileChannel channel) {
+		try {
+			final long size = channel.size();
+			if (size > 0) {
+				return size - channel.position();
+			}
+		} catch (IOException e) {
+			// a pipe or some other descriptor that cannot seek
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the position of the channel, or -1 if it cannot seek
+	 */
+	private static long position(FileChannel channel) {
+		try {
+			return channel.position();
+		} catch (IOException e) {
+			// a pipe or some other descriptor that cannot seek
+		}
+		return -1;
+	}
+
+	/**
+	 * Reads every byte from an indeterminate channel. This does not go through
+	 * {@link Channels#newInputStream}, which would seek a file channel.
+	 */
+	private static byte[] read(ReadableByteChannel channel) throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final byte[] reader = new byte[IO_BUFFER_SIZE];
+		final ByteBuffer wrapped = ByteBuffer.wrap(reader);
+		int r = 0;
+		while ((r = channel.read(wrapped)) != -1) {
+			buffer.write(reader, 0, r);
+			wrapped.clear();
+		}
+		return buffer.toByteArray();
+	}
+
+	/**
+	 * Reads every byte from an indeterminate stream.
+	 */
+	private static byte[] read(InputStream stream) throws IOException {
+		/*
+		 * This is the fastest method I know for reading from an
+		 * indeterminate stream. So fast in fact, that it pars fairly well
+		 * with FileChannel stuff in test cases.
+		 * 
+		 * Small and simple enough the JIT can grab hold and optimize it,
+		 * but with a large enough buffer to not make reading slow.
+		 */
+		final BufferedInputStream input = new BufferedInputStream(stream);
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream(); /* magic */
+		final byte[] reader = new byte[IO_BUFFER_SIZE];
+		int r = 0;
+		while ((r = input.read(reader, 0, IO_BUFFER_SIZE)) != -1) {
+			buffer.write(reader, 0, r);
+		}
+		buffer.flush();
+		return buffer.toByteArray();
+	}
 
 	/**
 	 * Get an every byte from an input stream and put it into a byte array.
@@ -62,23 +179,11 @@ public class Files {
 	 */
 	public static byte[] get(InputStream stream) throws IOException {
 		if (stream != null) {
-			/*
-			 * This is the fastest method I know for reading from an
-			 * indeterminate stream. So fast in fact, that it pars fairly well
-			 * with FileChannel stuff in test cases.
-			 * 
-			 * Small and simple enough the JIT can grab hold and optimize it,
-			 * but with a large enough buffer to not make reading slow.
-			 */
-			final BufferedInputStream input = new BufferedInputStream(stream);
-			final ByteArrayOutputStream buffer = new ByteArrayOutputStream(); /* magic */
-			final byte[] reader = new byte[IO_BUFFER_SIZE];
-			int r = 0;
-			while ((r = input.read(reader, 0, IO_BUFFER_SIZE)) != -1) {
-				buffer.write(reader, 0, r);
+			if (stream.getClass() == FileInputStream.class) {
+				// we know the length, so skip the copying
+				return get(((FileInputStream) stream).getChannel());
 			}
-			buffer.flush();
-			return buffer.toByteArray();
+			return read(stream);
 		}
 		return null;
 	}
@@ -130,23 +235,7 @@ public class Files {
 	public static byte[] getAndClose(InputStream stream) throws IOException {
 		if (stream != null) {
 			try {
-				/*
-				 * This is the fastest method I know for reading from an
-				 * indeterminate stream. So fast in fact, that it pars fairly
-				 * well with FileChannel stuff in test cases.
-				 * 
-				 * Small and simple enough the JIT can grab hold and optimize
-				 * it, but with a large enough buffer to not make reading slow.
-				 */
-				final BufferedInputStream input = new BufferedInputStream(stream);
-				final ByteArrayOutputStream buffer = new ByteArrayOutputStream(); /* magic */
-				final byte[] reader = new byte[IO_BUFFER_SIZE];
-				int r = 0;
-				while ((r = input.read(reader, 0, IO_BUFFER_SIZE)) != -1) {
-					buffer.write(reader, 0, r);
-				}
-				buffer.flush();
-				return buffer.toByteArray();
+				return get(stream);
 			} finally {
 				stream.close();
 			}
@@ -222,6 +311,68 @@ public class Files {
 		return null;
 	}
 
+	/**
+	 * Gets the contents of the given file as a read-only buffer. Files of at
+	 * least {@link #MAP_THRESHOLD} bytes are memory mapped rather than copied
+	 * onto the heap.
+	 * 
+	 * @param file
+	 *            The file.
+	 * @return the contents of the file, or <code>null</code> on failure
+	 */
+	public static ByteBuffer getFileBuffer(File file) {
+		return getFileBuffer(file, MAP_THRESHOLD);
+	}
+
+	/**
+	 * Gets the contents of the given file as a read-only buffer. Files of at
+	 * least the given threshold are memory mapped rather than copied onto the
+	 * heap. The mapping remains valid after this method returns.
+	 * 
+	 * @param file
+	 *            The file.
+	 * @param threshold
+	 *            The size at which the file is mapped instead of read.
+	 * @return the contents of the file, or <code>null</code> on failure
+	 */
+	public static ByteBuffer getFileBuffer(File file, long threshold) {
+		FileInputStream fis = null;
+		try {
+			fis = new FileInputStream(file);
+			final FileChannel channel = fis.getChannel();
+			final long size = channel.size();
+			if (size >= threshold && size > 0) {
+				if (size > Integer.MAX_VALUE) {
+					return null;
+				}
+				return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			}
+			return ByteBuffer.wrap(get(channel)).asReadOnlyBuffer();
+		} catch (IOException e) {
+		} finally {
+			if (fis != null) {
+				try {
+					fis.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the contents of the given file as a read-only buffer. Files of at
+	 * least {@link #MAP_THRESHOLD} bytes are memory mapped rather than copied
+	 * onto the heap.
+	 * 
+	 * @param filename
+	 *            The file's filename.
+	 * @return the contents of the file, or <code>null</code> on failure
+	 */
+	public static ByteBuffer getFileBuffer(String filename) {
+		return getFileBuffer(new File(filename), MAP_THRESHOLD);
+	}
+
 	/**
 	 * Reads a serialized object from the given file.
 	 * 
@@ -346,6 +497,12 @@ public class Files {
 	 */
 	public static void pipe(InputStream istream, OutputStream ostream) throws IOException {
 		if (ostream != null && istream != null) {
+			if (istream.getClass() == FileInputStream.class || ostream.getClass() == FileOutputStream.class) {
+				// let the file channel copy it for us
+				pipe(toChannel(istream), toChannel(ostream));
+				ostream.flush();
+				return;
+			}
 			/*
 			 * This is the fastest method I know for reading from an
 			 * indeterminate stream. So fast in fact, that it pars fairly well
@@ -380,6 +537,11 @@ public class Files {
 	public static void pipeAndClose(InputStream istream, OutputStream ostream) throws IOException {
 		if (ostream != null && istream != null) {
 			try {
+				if (istream.getClass() == FileInputStream.class || ostream.getClass() == FileOutputStream.class) {
+					pipe(toChannel(istream), toChannel(ostream));
+					ostream.flush();
+					return;
+				}
 				/*
 				 * This is the fastest method I know for reading from an
 				 * indeterminate stream. So fast in fact, that it pars fairly
@@ -406,6 +568,99 @@ public class Files {
 		}
 	}
 
+	/**
+	 * Writes to the output channel as it gets data from the input channel. If
+	 * either channel is over a regular file the copy is done with
+	 * {@link FileChannel#transferTo} or {@link FileChannel#transferFrom},
+	 * which lets the operating system move the data without copying it
+	 * through the heap. The position of any file channel is advanced past the
+	 * data copied. Pipes and files that report no length are copied through a
+	 * buffer instead.
+	 * 
+	 * @param ichannel
+	 *            Channel to read from
+	 * @param ochannel
+	 *            Channel to write to
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public static void pipe(ReadableByteChannel ichannel, WritableByteChannel ochannel) throws IOException {
+		if (ochannel != null && ichannel != null) {
+			if (ichannel instanceof FileChannel && remaining((FileChannel) ichannel) != -1) {
+				final FileChannel input = (FileChannel) ichannel;
+				long position = input.position();
+				long n = 0;
+				// run to the end of the file, even if it grows as we go
+				while ((n = input.transferTo(position, IO_TRANSFER_SIZE, ochannel)) > 0) {
+					position += n;
+				}
+				input.position(position);
+				if (position >= input.size()) {
+					return;
+				}
+				// the target would not take any more, finish it the slow way
+			} else if (!(ichannel instanceof FileChannel) && ochannel instanceof FileChannel
+					&& position((FileChannel) ochannel) != -1) {
+				final FileChannel output = (FileChannel) ochannel;
+				long position = output.position();
+				long n = 0;
+				while ((n = output.transferFrom(ichannel, position, IO_TRANSFER_SIZE)) > 0) {
+					position += n;
+				}
+				output.position(position);
+				return;
+			}
+			final ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE);
+			while (ichannel.read(buffer) != -1) {
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					ochannel.write(buffer);
+				}
+				buffer.clear();
+			}
+		}
+	}
+
+	/**
+	 * Writes to the output channel as it gets data from the input channel.
+	 * Finally it closes both.
+	 * 
+	 * @param ichannel
+	 *            Channel to read from
+	 * @param ochannel
+	 *            Channel to write to
+	 * @throws IOException
+	 *             if an error occurs
+	 * @see #pipe(ReadableByteChannel, WritableByteChannel)
+	 */
+	public static void pipeAndClose(ReadableByteChannel ichannel, WritableByteChannel ochannel) throws IOException {
+		if (ochannel != null && ichannel != null) {
+			try {
+				pipe(ichannel, ochannel);
+			} finally {
+				try {
+					ichannel.close();
+				} finally {
+					ochannel.close();
+				}
+			}
+		}
+	}
+
+	private static ReadableByteChannel toChannel(InputStream stream) {
+		if (stream.getClass() == FileInputStream.class) {
+			return ((FileInputStream) stream).getChannel();
+		}
+		return Channels.newChannel(stream);
+	}
+
+	private static WritableByteChannel toChannel(OutputStream stream) {
+		if (stream.getClass() == FileOutputStream.class) {
+			return ((FileOutputStream) stream).getChannel();
+		}
+		return Channels.newChannel(stream);
+	}
+
 	/**
 	 * Sets the contents of the given file.
 	 * 
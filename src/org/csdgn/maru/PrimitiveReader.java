@@ -0,0 +1,302 @@
+/**
+ * Copyright (c) 2014 Robert Maupin
+ * 
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+package org.csdgn.maru;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channel;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+
+/**
+ * Reads primitive values from a channel through a reusable buffer, so data
+ * far larger than memory can be decoded as it streams in. Arrays of values
+ * are copied out of the buffer in bulk, the same as {@link ByteConverter}.
+ * 
+ * @author Robert Maupin
+ * @see PrimitiveWriter
+ */
+public class PrimitiveReader implements Closeable {
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+	private static final int MINIMUM_BUFFER_SIZE = 16;
+
+	private final ReadableByteChannel channel;
+	private final ByteBuffer buffer;
+	private final ByteConverter converter;
+
+	/**
+	 * Reads values in the native byte order.
+	 */
+	public PrimitiveReader(ReadableByteChannel channel) {
+		this(channel, ByteOrder.nativeOrder());
+	}
+
+	public PrimitiveReader(ReadableByteChannel channel, ByteOrder order) {
+		this(channel, order, DEFAULT_BUFFER_SIZE, false);
+	}
+
+	/**
+	 * @param channel
+	 *            the channel to read from, which must block
+	 * @param order
+	 *            the order of the bytes of each value
+	 * @param bufferSize
+	 *            the size of the buffer, at least 16 bytes are used
+	 * @param direct
+	 *            if the buffer should be direct, which can save a copy when
+	 *            reading from a file
+	 */
+	public PrimitiveReader(ReadableByteChannel channel, ByteOrder order, int bufferSize, boolean direct) {
+		checkBlocking(channel);
+		this.channel = channel;
+		bufferSize = Math.max(bufferSize, MINIMUM_BUFFER_SIZE);
+		buffer = direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+		buffer.order(order);
+		converter = new ByteConverter(order);
+		buffer.limit(0);
+	}
+
+	/**
+	 * Closes the channel.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * The buffer loops wait on the channel, so a non-blocking channel would
+	 * make them spin.
+	 * 
+	 * @throws IllegalBlockingModeException
+	 *             if the channel is in non-blocking mode
+	 */
+	private static void checkBlocking(Channel channel) {
+		if (channel instanceof SelectableChannel && !((SelectableChannel) channel).isBlocking()) {
+			throw new IllegalBlockingModeException();
+		}
+	}
+
+	/**
+	 * Reads from the channel, failing instead of spinning if the channel was
+	 * switched to non-blocking mode.
+	 */
+	private int read(ByteBuffer dst) throws IOException {
+		final int n = channel.read(dst);
+		if (n == 0) {
+			checkBlocking(channel);
+		}
+		return n;
+	}
+
+	/**
+	 * @return the order of the bytes of each value
+	 */
+	public ByteOrder getOrder() {
+		return buffer.order();
+	}
+
+	/**
+	 * Reads more from the channel until at least the given number of bytes
+	 * are buffered.
+	 * 
+	 * @throws EOFException
+	 *             if the channel ends first
+	 */
+	private void require(int count) throws IOException {
+		if (buffer.remaining() >= count) {
+			return;
+		}
+		buffer.compact();
+		try {
+			while (buffer.position() < count) {
+				if (read(buffer) == -1) {
+					throw new EOFException();
+				}
+			}
+		} finally {
+			buffer.flip();
+		}
+	}
+
+	/**
+	 * @return if the channel has ended and nothing is left buffered
+	 */
+	public boolean isAtEnd() throws IOException {
+		if (buffer.hasRemaining()) {
+			return false;
+		}
+		buffer.clear();
+		int r = 0;
+		try {
+			while ((r = read(buffer)) == 0) {
+				/* wait for at least one byte */
+			}
+		} finally {
+			buffer.flip();
+		}
+		return r == -1;
+	}
+
+	public byte readByte() throws IOException {
+		require(1);
+		return buffer.get();
+	}
+
+	/**
+	 * Fills the given range of the array with bytes from the channel.
+	 * 
+	 * @throws EOFException
+	 *             if the channel ends first
+	 */
+	public void readFully(byte[] dst, int off, int len) throws IOException {
+		final int buffered = Math.min(len, buffer.remaining());
+		buffer.get(dst, off, buffered);
+		off += buffered;
+		len -= buffered;
+		if (len == 0) {
+			return;
+		}
+		if (len < buffer.capacity()) {
+			require(len);
+			buffer.get(dst, off, len);
+			return;
+		}
+		/* skip the buffer for large reads */
+		final ByteBuffer wrapped = ByteBuffer.wrap(dst, off, len);
+		while (wrapped.hasRemaining()) {
+			if (read(wrapped) == -1) {
+				throw new EOFException();
+			}
+		}
+	}
+
+	public short readShort() throws IOException {
+		require(2);
+		return buffer.getShort();
+	}
+
+	/**
+	 * Fills the given range of the array with values from the channel.
+	 * 
+	 * @throws EOFException
+	 *             if the channel ends first
+	 */
+	public void readShortArray(short[] dst, int off, int len) throws IOException {
+		while (len > 0) {
+			require(2);
+			final int count = Math.min(len, buffer.remaining() >> 1);
+			converter.getShortArray(buffer, dst, off, count);
+			off += count;
+			len -= count;
+		}
+	}
+
+	public int readInt() throws IOException {
+		require(4);
+		return buffer.getInt();
+	}
+
+	/**
+	 * Fills the given range of the array with values from the channel.
+	 * 
+	 * @throws EOFException
+	 *             if the channel ends first
+	 */
+	public void readIntArray(int[] dst, int off, int len) throws IOException {
+		while (len > 0) {
+			require(4);
+			final int count = Math.min(len, buffer.remaining() >> 2);
+			converter.getIntArray(buffer, dst, off, count);
+			off += count;
+			len -= count;
+		}
+	}
+
+	public long readLong() throws IOException {
+		require(8);
+		return buffer.getLong();
+	}
+
+	/**
+	 * Fills the given range of the array with values from the channel.
+	 * 
+	 * @throws EOFException
+	 *             if the channel ends first
+	 */
+	public void readLongArray(long[] dst, int off, int len) throws IOException {
+		while (len > 0) {
+			require(8);
+			final int count = Math.min(len, buffer.remaining() >> 3);
+			converter.getLongArray(buffer, dst, off, count);
+			off += count;
+			len -= count;
+		}
+	}
+
+	public float readFloat() throws IOException {
+		require(4);
+		return buffer.getFloat();
+	}
+
+	/**
+	 * Fills the given range of the array with values from the channel.
+	 * 
+	 * @throws EOFException
+	 *             if the channel ends first
+	 */
+	public void readFloatArray(float[] dst, int off, int len) throws IOException {
+		while (len > 0) {
+			require(4);
+			final int count = Math.min(len, buffer.remaining() >> 2);
+			converter.getFloatArray(buffer, dst, off, count);
+			off += count;
+			len -= count;
+		}
+	}
+
+	public double readDouble() throws IOException {
+		require(8);
+		return buffer.getDouble();
+	}
+
+	/**
+	 * Fills the given range of the array with values from the channel.
+	 * 
+	 * @throws EOFException
+	 *             if the channel ends first
+	 */
+	public void readDoubleArray(double[] dst, int off, int len) throws IOException {
+		while (len > 0) {
+			require(8);
+			final int count = Math.min(len, buffer.remaining() >> 3);
+			converter.getDoubleArray(buffer, dst, off, count);
+			off += count;
+			len -= count;
+		}
+	}
+}
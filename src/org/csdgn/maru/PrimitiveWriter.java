@@ -0,0 +1,262 @@
+/**
+ * Copyright (c) 2014 Robert Maupin
+ * 
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+package org.csdgn.maru;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channel;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.channels.SelectableChannel;
+
+/**
+ * Writes primitive values to a channel through a reusable buffer, so data far
+ * larger than memory can be encoded as it streams out. Arrays of values are
+ * copied into the buffer in bulk, the same as {@link ByteConverter}.
+ * 
+ * @author Robert Maupin
+ * @see PrimitiveReader
+ */
+public class PrimitiveWriter implements Closeable, Flushable {
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+	private static final int MINIMUM_BUFFER_SIZE = 16;
+
+	private final WritableByteChannel channel;
+	private final ByteBuffer buffer;
+	private final ByteConverter converter;
+
+	/**
+	 * Writes values in the native byte order.
+	 */
+	public PrimitiveWriter(WritableByteChannel channel) {
+		this(channel, ByteOrder.nativeOrder());
+	}
+
+	public PrimitiveWriter(WritableByteChannel channel, ByteOrder order) {
+		this(channel, order, DEFAULT_BUFFER_SIZE, false);
+	}
+
+	/**
+	 * @param channel
+	 *            the channel to write to, which must block
+	 * @param order
+	 *            the order of the bytes of each value
+	 * @param bufferSize
+	 *            the size of the buffer, at least 16 bytes are used
+	 * @param direct
+	 *            if the buffer should be direct, which can save a copy when
+	 *            writing to a file
+	 */
+	public PrimitiveWriter(WritableByteChannel channel, ByteOrder order, int bufferSize, boolean direct) {
+		checkBlocking(channel);
+		this.channel = channel;
+		bufferSize = Math.max(bufferSize, MINIMUM_BUFFER_SIZE);
+		buffer = direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+		buffer.order(order);
+		converter = new ByteConverter(order);
+	}
+
+	/**
+	 * Flushes the buffer and closes the channel.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Writes everything buffered to the channel.
+	 */
+	@Override
+	public void flush() throws IOException {
+		buffer.flip();
+		try {
+			while (buffer.hasRemaining()) {
+				write(buffer);
+			}
+		} finally {
+			buffer.compact();
+		}
+	}
+
+	/**
+	 * The buffer loops wait on the channel, so a non-blocking channel would
+	 * make them spin.
+	 * 
+	 * @throws IllegalBlockingModeException
+	 *             if the channel is in non-blocking mode
+	 */
+	private static void checkBlocking(Channel channel) {
+		if (channel instanceof SelectableChannel && !((SelectableChannel) channel).isBlocking()) {
+			throw new IllegalBlockingModeException();
+		}
+	}
+
+	/**
+	 * Writes to the channel, failing instead of spinning if the channel was
+	 * switched to non-blocking mode.
+	 */
+	private int write(ByteBuffer src) throws IOException {
+		final int n = channel.write(src);
+		if (n == 0) {
+			checkBlocking(channel);
+		}
+		return n;
+	}
+
+	/**
+	 * @return the order of the bytes of each value
+	 */
+	public ByteOrder getOrder() {
+		return buffer.order();
+	}
+
+	/**
+	 * Flushes the buffer if it does not have room for the given number of
+	 * bytes.
+	 */
+	private void reserve(int count) throws IOException {
+		if (buffer.remaining() < count) {
+			flush();
+		}
+	}
+
+	/**
+	 * Writes the given range of the array.
+	 */
+	public void write(byte[] src, int off, int len) throws IOException {
+		if (len < buffer.capacity()) {
+			reserve(len);
+			buffer.put(src, off, len);
+			return;
+		}
+		/* skip the buffer for large writes */
+		flush();
+		final ByteBuffer wrapped = ByteBuffer.wrap(src, off, len);
+		while (wrapped.hasRemaining()) {
+			write(wrapped);
+		}
+	}
+
+	public void writeByte(byte value) throws IOException {
+		reserve(1);
+		buffer.put(value);
+	}
+
+	public void writeShort(short value) throws IOException {
+		reserve(2);
+		buffer.putShort(value);
+	}
+
+	/**
+	 * Writes the given range of the array.
+	 */
+	public void writeShortArray(short[] src, int off, int len) throws IOException {
+		while (len > 0) {
+			reserve(2);
+			final int count = Math.min(len, buffer.remaining() >> 1);
+			converter.putShortArray(buffer, src, off, count);
+			off += count;
+			len -= count;
+		}
+	}
+
+	public void writeInt(int value) throws IOException {
+		reserve(4);
+		buffer.putInt(value);
+	}
+
+	/**
+	 * Writes the given range of the array.
+	 */
+	public void writeIntArray(int[] src, int off, int len) throws IOException {
+		while (len > 0) {
+			reserve(4);
+			final int count = Math.min(len, buffer.remaining() >> 2);
+			converter.putIntArray(buffer, src, off, count);
+			off += count;
+			len -= count;
+		}
+	}
+
+	public void writeLong(long value) throws IOException {
+		reserve(8);
+		buffer.putLong(value);
+	}
+
+	/**
+	 * Writes the given range of the array.
+	 */
+	public void writeLongArray(long[] src, int off, int len) throws IOException {
+		while (len > 0) {
+			reserve(8);
+			final int count = Math.min(len, buffer.remaining() >> 3);
+			converter.putLongArray(buffer, src, off, count);
+			off += count;
+			len -= count;
+		}
+	}
+
+	public void writeFloat(float value) throws IOException {
+		reserve(4);
+		buffer.putFloat(value);
+	}
+
+	/**
+	 * Writes the given range of the array.
+	 */
+	public void writeFloatArray(float[] src, int off, int len) throws IOException {
+		while (len > 0) {
+			reserve(4);
+			final int count = Math.min(len, buffer.remaining() >> 2);
+			converter.putFloatArray(buffer, src, off, count);
+			off += count;
+			len -= count;
+		}
+	}
+
+	public void writeDouble(double value) throws IOException {
+		reserve(8);
+		buffer.putDouble(value);
+	}
+
+	/**
+	 * Writes the given range of the array.
+	 */
+	public void writeDoubleArray(double[] src, int off, int len) throws IOException {
+		while (len > 0) {
+			reserve(8);
+			final int count = Math.min(len, buffer.remaining() >> 3);
+			converter.putDoubleArray(buffer, src, off, count);
+			off += count;
+			len -= count;
+		}
+	}
+}
@@ -26,6 +26,10 @@ import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
 /**
  * Some basic methods to allow easy escaping and unescaping of strings.
@@ -33,6 +37,65 @@ import java.util.NoSuchElementException;
  * @author Robert Maupin
  */
 public class Strings {
+	/**
+	 * Splits a range of characters, reporting each as an int.
+	 */
+	private static final class CharSpliterator implements Spliterator.OfInt {
+		private static final int CHARACTERISTICS = Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED
+				| Spliterator.IMMUTABLE;
+		private final CharSequence source;
+		private int index;
+		private final int end;
+
+		CharSpliterator(CharSequence source, int index, int end) {
+			this.source = source;
+			this.index = index;
+			this.end = end;
+		}
+
+		@Override
+		public int characteristics() {
+			return CHARACTERISTICS;
+		}
+
+		@Override
+		public long estimateSize() {
+			return end - index;
+		}
+
+		@Override
+		public void forEachRemaining(IntConsumer action) {
+			final CharSequence source = this.source;
+			final int end = this.end;
+			int i = index;
+			index = end;
+			for (; i < end; ++i) {
+				action.accept(source.charAt(i));
+			}
+		}
+
+		@Override
+		public boolean tryAdvance(IntConsumer action) {
+			if (index < end) {
+				final int i = index++;
+				action.accept(source.charAt(i));
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public Spliterator.OfInt trySplit() {
+			final int start = index;
+			final int middle = start + end >>> 1;
+			if (start >= middle) {
+				return null;
+			}
+			index = middle;
+			return new CharSpliterator(source, start, middle);
+		}
+	}
+
 	/**
 	 * This method escapes special characters in the given string.
 	 * 
@@ -162,6 +225,39 @@ public class Strings {
 		return count;
 	}
 
+	/**
+	 * @return a spliterator over the characters of the sequence, which does
+	 *         not box. The sequence should not change while it is in use.
+	 */
+	public static Spliterator.OfInt getSpliterator(CharSequence string) {
+		return new CharSpliterator(string, 0, string.length());
+	}
+
+	/**
+	 * @return a spliterator over the given range of characters, which does not
+	 *         box. The sequence should not change while it is in use.
+	 */
+	public static Spliterator.OfInt getSpliterator(CharSequence string, int from, int to) {
+		if (from < 0 || to > string.length() || from > to) {
+			throw new IndexOutOfBoundsException();
+		}
+		return new CharSpliterator(string, from, to);
+	}
+
+	/**
+	 * @return a sequential stream of the characters of the sequence
+	 */
+	public static IntStream getStream(CharSequence string) {
+		return StreamSupport.intStream(getSpliterator(string), false);
+	}
+
+	/**
+	 * @return a sequential stream of the given range of characters
+	 */
+	public static IntStream getStream(CharSequence string, int from, int to) {
+		return StreamSupport.intStream(getSpliterator(string, from, to), false);
+	}
+
 	public static final Iterable<Character> getIterable(final String string) {
 		return new Iterable<Character>() {
 			@Override
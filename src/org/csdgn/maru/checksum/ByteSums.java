@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2014 Robert Maupin
+ * 
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+package org.csdgn.maru.checksum;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Sums bytes 8 at a time for the additive checksums. Each long is split into
+ * four 16 bit lanes which are added together, the lanes are folded into the
+ * total before they can overflow.
+ * 
+ * @author Robert Maupin
+ */
+final class ByteSums {
+	private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final long LOW_BYTES = 0x00FF00FF00FF00FFL;
+	private static final long HIGH_BITS = 0x8080808080808080L;
+	/** the most longs that can be added into the lanes, 128 * 510 &lt; 65536 */
+	private static final int LANE_LIMIT = 128 * 8;
+
+	/**
+	 * @return the sum of the given bytes, as signed or unsigned values
+	 */
+	static long sum(byte[] b, int off, int len, boolean signed) {
+		if (off < 0 || len < 0 || off + len > b.length) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		final int end = off + len;
+		long total = 0;
+		int i = off;
+		while (end - i >= 8) {
+			final int stop = i + Math.min(end - i & ~7, LANE_LIMIT);
+			long lanes = 0;
+			int high = 0;
+			for (; i < stop; i += 8) {
+				final long v = (long) LONGS.get(b, i);
+				lanes += (v & LOW_BYTES) + (v >>> 8 & LOW_BYTES);
+				high += Long.bitCount(v & HIGH_BITS);
+			}
+			total += fold(lanes);
+			if (signed) {
+				total -= (long) high << 8;
+			}
+		}
+		for (; i < end; ++i) {
+			total += signed ? b[i] : b[i] & 0xFF;
+		}
+		return total;
+	}
+
+	/**
+	 * Sums the remaining bytes of the buffer, leaving it at its limit.
+	 * 
+	 * @return the sum of the bytes, as signed or unsigned values
+	 */
+	static long sum(ByteBuffer buffer, boolean signed) {
+		final int pos = buffer.position();
+		final int end = buffer.limit();
+		if (buffer.hasArray()) {
+			buffer.position(end);
+			return sum(buffer.array(), buffer.arrayOffset() + pos, end - pos, signed);
+		}
+		long total = 0;
+		int i = pos;
+		while (end - i >= 8) {
+			final int stop = i + Math.min(end - i & ~7, LANE_LIMIT);
+			long lanes = 0;
+			int high = 0;
+			for (; i < stop; i += 8) {
+				// the byte order does not matter for a sum
+				final long v = buffer.getLong(i);
+				lanes += (v & LOW_BYTES) + (v >>> 8 & LOW_BYTES);
+				high += Long.bitCount(v & HIGH_BITS);
+			}
+			total += fold(lanes);
+			if (signed) {
+				total -= (long) high << 8;
+			}
+		}
+		for (; i < end; ++i) {
+			final byte v = buffer.get(i);
+			total += signed ? v : v & 0xFF;
+		}
+		buffer.position(end);
+		return total;
+	}
+
+	private static long fold(long lanes) {
+		lanes = (lanes & 0x0000FFFF0000FFFFL) + (lanes >>> 16 & 0x0000FFFF0000FFFFL);
+		return (lanes & 0xFFFFFFFFL) + (lanes >>> 32);
+	}
+
+	private ByteSums() {
+	}
+}
@@ -0,0 +1,382 @@
+/**
+ * Copyright (c) 2014 Robert Maupin
+ * 
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+package org.csdgn.maru.checksum;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.zip.Checksum;
+
+/**
+ * A table based CRC of any width from 1 to 64 bits, described by the usual
+ * width, polynomial, initial value, input and output reflection and final xor
+ * parameters. Common models are provided as constants.
+ * 
+ * <p>
+ * The lookup tables are generated once for each distinct set of parameters
+ * and shared by every CRC using them. Bulk updates fold 8 bytes at a time.
+ * </p>
+ * 
+ * @author Robert Maupin
+ */
+public class CRC implements Checksum {
+	/**
+	 * The parameters of a CRC and its lookup tables. Models are shared, get
+	 * one with {@link CRC#model(int, long, long, boolean, boolean, long)}.
+	 */
+	public static final class Model {
+		private final int width;
+		private final long poly;
+		private final long init;
+		private final boolean refin;
+		private final boolean refout;
+		private final long xorout;
+		private final long mask;
+		/** the initial register */
+		private final long start;
+		/** slicing by 8 tables, table k is a byte followed by k zero bytes */
+		private final long[] table;
+		/** the effect of one zero byte on the register, made when needed */
+		private volatile long[] zeroByte;
+
+		private Model(int width, long poly, long init, boolean refin, boolean refout, long xorout) {
+			this.width = width;
+			this.mask = width == 64 ? -1L : (1L << width) - 1;
+			this.poly = poly & mask;
+			this.init = init & mask;
+			this.refin = refin;
+			this.refout = refout;
+			this.xorout = xorout & mask;
+			this.table = new long[8 * 256];
+			if (refin) {
+				final long rpoly = reflect(this.poly, width);
+				for (int i = 0; i < 256; ++i) {
+					long r = i;
+					for (int j = 0; j < 8; ++j) {
+						r = (r & 1) != 0 ? (r >>> 1) ^ rpoly : r >>> 1;
+					}
+					table[i] = r;
+				}
+				for (int k = 1; k < 8; ++k) {
+					for (int i = 0; i < 256; ++i) {
+						final long prev = table[(k - 1 << 8) + i];
+						table[(k << 8) + i] = (prev >>> 8) ^ table[(int) prev & 0xFF];
+					}
+				}
+				start = reflect(this.init, width);
+			} else {
+				final long lpoly = this.poly << 64 - width;
+				for (int i = 0; i < 256; ++i) {
+					long r = (long) i << 56;
+					for (int j = 0; j < 8; ++j) {
+						r = r < 0 ? (r << 1) ^ lpoly : r << 1;
+					}
+					table[i] = r;
+				}
+				for (int k = 1; k < 8; ++k) {
+					for (int i = 0; i < 256; ++i) {
+						final long prev = table[(k - 1 << 8) + i];
+						table[(k << 8) + i] = (prev << 8) ^ table[(int) (prev >>> 56)];
+					}
+				}
+				start = this.init << 64 - width;
+			}
+		}
+
+		public int getWidth() {
+			return width;
+		}
+
+		public long getPoly() {
+			return poly;
+		}
+
+		public long getInit() {
+			return init;
+		}
+
+		public boolean isRefIn() {
+			return refin;
+		}
+
+		public boolean isRefOut() {
+			return refout;
+		}
+
+		public long getXorOut() {
+			return xorout;
+		}
+
+		/**
+		 * Combines the CRCs of two ranges into the CRC of the second range
+		 * appended to the first.
+		 * 
+		 * @param crc1
+		 *            the CRC of the first range
+		 * @param crc2
+		 *            the CRC of the second range
+		 * @param len2
+		 *            the length of the second range
+		 * @return the CRC of both ranges
+		 */
+		public long combine(long crc1, long crc2, long len2) {
+			/*
+			 * Running the second range from the first register instead of the
+			 * initial one adds the difference of the two, shifted over the
+			 * length of the second range.
+			 */
+			long[] op = zeroByte;
+			if (op == null) {
+				op = new long[64];
+				for (int n = 0; n < 64; ++n) {
+					final long bit = 1L << n;
+					op[n] = refin ? (bit >>> 8) ^ table[(int) bit & 0xFF] : (bit << 8) ^ table[(int) (bit >>> 56)];
+				}
+				zeroByte = op;
+			}
+			return value(GF2.power(op, register(crc1) ^ start, len2) ^ register(crc2));
+		}
+
+		/**
+		 * Turns a CRC value back into a register.
+		 */
+		long register(long value) {
+			value = (value ^ xorout) & mask;
+			if (refin != refout) {
+				value = reflect(value, width);
+			}
+			return refin ? value : value << 64 - width;
+		}
+
+		/**
+		 * Turns a register into a CRC value.
+		 */
+		long value(long register) {
+			long value = refin ? register : register >>> 64 - width;
+			if (refin != refout) {
+				value = reflect(value, width);
+			}
+			return (value ^ xorout) & mask;
+		}
+	}
+
+	private static final HashMap<String, Model> models = new HashMap<String, Model>();
+
+	/** CRC-8/SMBUS */
+	public static final Model CRC8 = model(8, 0x07, 0, false, false, 0);
+	/** CRC-16/ARC, also called CRC-16-IBM, the same as {@link CRC16} */
+	public static final Model CRC16_ARC = model(16, 0x8005, 0, true, true, 0);
+	/** CRC-16/CCITT-FALSE */
+	public static final Model CRC16_CCITT_FALSE = model(16, 0x1021, 0xFFFF, false, false, 0);
+	/** CRC-16/KERMIT, also called CRC-16/CCITT */
+	public static final Model CRC16_KERMIT = model(16, 0x1021, 0, true, true, 0);
+	/** CRC-16/XMODEM */
+	public static final Model CRC16_XMODEM = model(16, 0x1021, 0, false, false, 0);
+	/** CRC-32, the same as {@link java.util.zip.CRC32} */
+	public static final Model CRC32 = model(32, 0x04C11DB7, 0xFFFFFFFFL, true, true, 0xFFFFFFFFL);
+	/** CRC-32C (Castagnoli) */
+	public static final Model CRC32C = model(32, 0x1EDC6F41, 0xFFFFFFFFL, true, true, 0xFFFFFFFFL);
+	/** CRC-64/ECMA-182 */
+	public static final Model CRC64_ECMA = model(64, 0x42F0E1EBA9EA3693L, 0, false, false, 0);
+	/** CRC-64/XZ */
+	public static final Model CRC64_XZ = model(64, 0x42F0E1EBA9EA3693L, -1L, true, true, -1L);
+
+	/**
+	 * Gets the model for the given parameters, creating its tables if no CRC
+	 * has used these parameters before.
+	 * 
+	 * @param width
+	 *            the width in bits, from 1 to 64
+	 * @param poly
+	 *            the polynomial, without its top bit and not reflected
+	 * @param init
+	 *            the initial value, not reflected
+	 * @param refin
+	 *            if input bytes are reflected (processed least significant bit
+	 *            first)
+	 * @param refout
+	 *            if the result is reflected
+	 * @param xorout
+	 *            the value to xor with the result
+	 * @return the model
+	 */
+	public static Model model(int width, long poly, long init, boolean refin, boolean refout, long xorout) {
+		if (width < 1 || width > 64) {
+			throw new IllegalArgumentException("CRC width must be from 1 to 64 bits.");
+		}
+		final long mask = width == 64 ? -1L : (1L << width) - 1;
+		final String key = width + ":" + (poly & mask) + ":" + (init & mask) + ":" + refin + ":" + refout + ":"
+				+ (xorout & mask);
+		synchronized (models) {
+			Model model = models.get(key);
+			if (model == null) {
+				model = new Model(width, poly, init, refin, refout, xorout);
+				models.put(key, model);
+			}
+			return model;
+		}
+	}
+
+	private static long reflect(long value, int width) {
+		return Long.reverse(value) >>> 64 - width;
+	}
+
+	private final Model model;
+	private final long[] table;
+	private long crc;
+
+	/**
+	 * @param model
+	 *            the CRC parameters, such as {@link #CRC32}
+	 */
+	public CRC(Model model) {
+		this.model = model;
+		this.table = model.table;
+		this.crc = model.start;
+	}
+
+	/**
+	 * @see #model(int, long, long, boolean, boolean, long)
+	 */
+	public CRC(int width, long poly, long init, boolean refin, boolean refout, long xorout) {
+		this(model(width, poly, init, refin, refout, xorout));
+	}
+
+	public Model getModel() {
+		return model;
+	}
+
+	@Override
+	public long getValue() {
+		return model.value(crc);
+	}
+
+	@Override
+	public void reset() {
+		crc = model.start;
+	}
+
+	public void update(byte[] data) {
+		update(data, 0, data.length);
+	}
+
+	@Override
+	public void update(byte[] data, int off, int len) {
+		final long[] t = table;
+		final int end = off + len;
+		long crc = this.crc;
+		int i = off;
+		if (model.refin) {
+			for (; end - i >= 8; i += 8) {
+				crc = t[0x700 + (((int) crc ^ data[i]) & 0xFF)] ^ t[0x600 + (((int) (crc >>> 8) ^ data[i + 1]) & 0xFF)]
+						^ t[0x500 + (((int) (crc >>> 16) ^ data[i + 2]) & 0xFF)]
+						^ t[0x400 + (((int) (crc >>> 24) ^ data[i + 3]) & 0xFF)]
+						^ t[0x300 + (((int) (crc >>> 32) ^ data[i + 4]) & 0xFF)]
+						^ t[0x200 + (((int) (crc >>> 40) ^ data[i + 5]) & 0xFF)]
+						^ t[0x100 + (((int) (crc >>> 48) ^ data[i + 6]) & 0xFF)]
+						^ t[((int) (crc >>> 56) ^ data[i + 7]) & 0xFF];
+			}
+			for (; i < end; ++i) {
+				crc = (crc >>> 8) ^ t[((int) crc ^ data[i]) & 0xFF];
+			}
+		} else {
+			for (; end - i >= 8; i += 8) {
+				crc = t[0x700 + (((int) (crc >>> 56) ^ data[i]) & 0xFF)]
+						^ t[0x600 + (((int) (crc >>> 48) ^ data[i + 1]) & 0xFF)]
+						^ t[0x500 + (((int) (crc >>> 40) ^ data[i + 2]) & 0xFF)]
+						^ t[0x400 + (((int) (crc >>> 32) ^ data[i + 3]) & 0xFF)]
+						^ t[0x300 + (((int) (crc >>> 24) ^ data[i + 4]) & 0xFF)]
+						^ t[0x200 + (((int) (crc >>> 16) ^ data[i + 5]) & 0xFF)]
+						^ t[0x100 + (((int) (crc >>> 8) ^ data[i + 6]) & 0xFF)] ^ t[((int) crc ^ data[i + 7]) & 0xFF];
+			}
+			for (; i < end; ++i) {
+				crc = (crc << 8) ^ t[((int) (crc >>> 56) ^ data[i]) & 0xFF];
+			}
+		}
+		this.crc = crc;
+	}
+
+	/**
+	 * Updates the CRC with the remaining bytes of the buffer, which is left at
+	 * its limit. Direct buffers are read 8 bytes at a time.
+	 * 
+	 * @param buffer
+	 *            the bytes to add
+	 */
+	public void update(ByteBuffer buffer) {
+		final int pos = buffer.position();
+		final int limit = buffer.limit();
+		if (buffer.hasArray()) {
+			update(buffer.array(), buffer.arrayOffset() + pos, limit - pos);
+			buffer.position(limit);
+			return;
+		}
+		final long[] t = table;
+		long crc = this.crc;
+		int i = pos;
+		if (model.refin) {
+			final boolean swap = buffer.order() == ByteOrder.BIG_ENDIAN;
+			for (; limit - i >= 8; i += 8) {
+				long v = buffer.getLong(i);
+				if (swap) {
+					v = Long.reverseBytes(v);
+				}
+				v ^= crc;
+				crc = t[0x700 + ((int) v & 0xFF)] ^ t[0x600 + ((int) (v >>> 8) & 0xFF)]
+						^ t[0x500 + ((int) (v >>> 16) & 0xFF)] ^ t[0x400 + ((int) (v >>> 24) & 0xFF)]
+						^ t[0x300 + ((int) (v >>> 32) & 0xFF)] ^ t[0x200 + ((int) (v >>> 40) & 0xFF)]
+						^ t[0x100 + ((int) (v >>> 48) & 0xFF)] ^ t[(int) (v >>> 56)];
+			}
+			for (; i < limit; ++i) {
+				crc = (crc >>> 8) ^ t[((int) crc ^ buffer.get(i)) & 0xFF];
+			}
+		} else {
+			final boolean swap = buffer.order() == ByteOrder.LITTLE_ENDIAN;
+			for (; limit - i >= 8; i += 8) {
+				long v = buffer.getLong(i);
+				if (swap) {
+					v = Long.reverseBytes(v);
+				}
+				v ^= crc;
+				crc = t[0x700 + (int) (v >>> 56)] ^ t[0x600 + ((int) (v >>> 48) & 0xFF)]
+						^ t[0x500 + ((int) (v >>> 40) & 0xFF)] ^ t[0x400 + ((int) (v >>> 32) & 0xFF)]
+						^ t[0x300 + ((int) (v >>> 24) & 0xFF)] ^ t[0x200 + ((int) (v >>> 16) & 0xFF)]
+						^ t[0x100 + ((int) (v >>> 8) & 0xFF)] ^ t[(int) v & 0xFF];
+			}
+			for (; i < limit; ++i) {
+				crc = (crc << 8) ^ t[((int) (crc >>> 56) ^ buffer.get(i)) & 0xFF];
+			}
+		}
+		this.crc = crc;
+		buffer.position(limit);
+	}
+
+	@Override
+	public void update(int b) {
+		if (model.refin) {
+			crc = (crc >>> 8) ^ table[((int) crc ^ b) & 0xFF];
+		} else {
+			crc = (crc << 8) ^ table[((int) (crc >>> 56) ^ b) & 0xFF];
+		}
+	}
+}
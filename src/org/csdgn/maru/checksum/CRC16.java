@@ -1,5 +1,7 @@
 package org.csdgn.maru.checksum;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.zip.Checksum;
 
 /**
@@ -43,6 +45,48 @@ public class CRC16 implements Checksum {
 	        0x8201, 0x42C0, 0x4380, 0x8341, 0x4100, 0x81C1, 0x8081, 0x4040,
 	    };
 
+	/**
+	 * Slicing by 8 tables. Table k holds the effect of a byte followed by k
+	 * zero bytes, so 8 bytes can be folded into the sum at once.
+	 */
+	private static final int[] slice = new int[8 * 256];
+
+	static {
+		System.arraycopy(lookup, 0, slice, 0, 256);
+		for (int k = 1; k < 8; ++k) {
+			for (int i = 0; i < 256; ++i) {
+				final int prev = slice[(k - 1 << 8) + i];
+				slice[(k << 8) + i] = (prev >>> 8) ^ lookup[prev & 0xff];
+			}
+		}
+	}
+
+	/** the effect of one zero byte on the sum */
+	private static final long[] zeroByte = new long[16];
+
+	static {
+		for (int n = 0; n < 16; ++n) {
+			final int bit = 1 << n;
+			zeroByte[n] = (bit >>> 8) ^ lookup[bit & 0xff];
+		}
+	}
+
+	/**
+	 * Combines the CRCs of two ranges into the CRC of the second range
+	 * appended to the first.
+	 * 
+	 * @param crc1
+	 *            the CRC of the first range
+	 * @param crc2
+	 *            the CRC of the second range
+	 * @param len2
+	 *            the length of the second range
+	 * @return the CRC of both ranges
+	 */
+	public static long combine(long crc1, long crc2, long len2) {
+		return (GF2.power(zeroByte, crc1 & 0xFFFF, len2) ^ crc2) & 0xFFFF;
+	}
+
 	private int sum = 0;
 
 	@Override
@@ -61,11 +105,57 @@ public class CRC16 implements Checksum {
 
 	@Override
 	public void update(byte[] data, int off, int len) {
-		int end = len + off;
+		final int end = len + off;
+		final int[] t = slice;
+		int crc = sum;
+		int i = off;
+		for (; end - i >= 8; i += 8) {
+			crc = t[0x700 + ((crc ^ data[i]) & 0xff)] ^ t[0x600 + ((crc >>> 8 ^ data[i + 1]) & 0xff)]
+					^ t[0x500 + (data[i + 2] & 0xff)] ^ t[0x400 + (data[i + 3] & 0xff)]
+					^ t[0x300 + (data[i + 4] & 0xff)] ^ t[0x200 + (data[i + 5] & 0xff)]
+					^ t[0x100 + (data[i + 6] & 0xff)] ^ t[data[i + 7] & 0xff];
+		}
+		for (; i < end; ++i) {
+			crc = (crc >>> 8) ^ lookup[(crc ^ data[i]) & 0xff];
+		}
+		sum = crc;
+	}
 
-		for (int i = off; i < end; ++i) {
-			update(data[i]);
+	/**
+	 * Updates the checksum with the remaining bytes of the buffer, which is
+	 * left at its limit. Direct buffers are read 8 bytes at a time.
+	 * 
+	 * @param buffer
+	 *            the bytes to add
+	 */
+	public void update(ByteBuffer buffer) {
+		final int pos = buffer.position();
+		final int limit = buffer.limit();
+		if (buffer.hasArray()) {
+			update(buffer.array(), buffer.arrayOffset() + pos, limit - pos);
+			buffer.position(limit);
+			return;
+		}
+		final boolean swap = buffer.order() == ByteOrder.BIG_ENDIAN;
+		final int[] t = slice;
+		int crc = sum;
+		int i = pos;
+		for (; limit - i >= 8; i += 8) {
+			long v = buffer.getLong(i);
+			if (swap) {
+				v = Long.reverseBytes(v);
+			}
+			v ^= crc;
+			crc = t[0x700 + ((int) v & 0xff)] ^ t[0x600 + ((int) (v >>> 8) & 0xff)]
+					^ t[0x500 + ((int) (v >>> 16) & 0xff)] ^ t[0x400 + ((int) (v >>> 24) & 0xff)]
+					^ t[0x300 + ((int) (v >>> 32) & 0xff)] ^ t[0x200 + ((int) (v >>> 40) & 0xff)]
+					^ t[0x100 + ((int) (v >>> 48) & 0xff)] ^ t[(int) (v >>> 56)];
+		}
+		for (; i < limit; ++i) {
+			crc = (crc >>> 8) ^ lookup[(crc ^ buffer.get(i)) & 0xff];
 		}
+		sum = crc;
+		buffer.position(limit);
 	}
 
 	@Override
@@ -22,6 +22,7 @@
  */
 package org.csdgn.maru.checksum;
 
+import java.nio.ByteBuffer;
 import java.util.zip.Checksum;
 
 /**
@@ -30,6 +31,22 @@ import java.util.zip.Checksum;
  * @author Robert Maupin
  */
 public class Checksum16 implements Checksum {
+	/**
+	 * Combines the checksums of two ranges into the checksum of the second
+	 * range appended to the first.
+	 * 
+	 * @param value1
+	 *            the checksum of the first range
+	 * @param value2
+	 *            the checksum of the second range
+	 * @param len2
+	 *            the length of the second range, which a sum does not need
+	 * @return the checksum of both ranges
+	 */
+	public static long combine(long value1, long value2, long len2) {
+		return value1 + value2 & 0xFFFF;
+	}
+
 	private long sum = 0;
 
 	@Override
@@ -44,9 +61,19 @@ public class Checksum16 implements Checksum {
 
 	@Override
 	public void update(byte[] b, int off, int len) {
-		for (int i = 0; i < len; ++i) {
-			update(b[i + off]);
-		}
+		// bytes are added as signed values, just as update(int) would see them
+		sum += ByteSums.sum(b, off, len, true);
+	}
+
+	/**
+	 * Updates the checksum with the remaining bytes of the buffer, which is
+	 * left at its limit.
+	 * 
+	 * @param buffer
+	 *            the bytes to add
+	 */
+	public void update(ByteBuffer buffer) {
+		sum += ByteSums.sum(buffer, true);
 	}
 
 	@Override
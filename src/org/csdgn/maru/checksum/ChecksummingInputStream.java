@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2014 Robert Maupin
+ * 
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+package org.csdgn.maru.checksum;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Checksum;
+
+/**
+ * An input stream that updates one or more checksums with the data read
+ * through it, so the data can be verified in the same pass that copies it.
+ * 
+ * @author Robert Maupin
+ */
+public class ChecksummingInputStream extends FilterInputStream {
+	private final Checksum[] checksums;
+	/** created on the first skip */
+	private byte[] skipBuffer;
+
+	/**
+	 * @param checksums
+	 *            the checksums to update, at least one
+	 */
+	public ChecksummingInputStream(InputStream in, Checksum... checksums) {
+		super(in);
+		if (checksums.length == 0) {
+			throw new IllegalArgumentException("At least one checksum is required.");
+		}
+		this.checksums = checksums.clone();
+	}
+
+	/**
+	 * @return the first checksum
+	 */
+	public Checksum getChecksum() {
+		return checksums[0];
+	}
+
+	/**
+	 * @return all the checksums, in the order given
+	 */
+	public Checksum[] getChecksums() {
+		return checksums.clone();
+	}
+
+	/**
+	 * ChecksummingInputStream does not support marks, so this does nothing.
+	 */
+	@Override
+	public void mark(int readLimit) {
+	}
+
+	/**
+	 * ChecksummingInputStream does not support marks
+	 */
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public int read() throws IOException {
+		final int b = in.read();
+		if (b != -1) {
+			for (Checksum checksum : checksums) {
+				checksum.update(b);
+			}
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		final int n = in.read(b, off, len);
+		if (n > 0) {
+			for (Checksum checksum : checksums) {
+				checksum.update(b, off, n);
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * ChecksummingInputStream does not support marks
+	 */
+	@Override
+	public void reset() throws IOException {
+		throw new IOException("ChecksummingInputStream does not support reset().");
+	}
+
+	/**
+	 * Skipped bytes are read so they can be added to the checksums.
+	 */
+	@Override
+	public long skip(long n) throws IOException {
+		if (n <= 0) {
+			return 0;
+		}
+		if (skipBuffer == null) {
+			skipBuffer = new byte[8192];
+		}
+		final byte[] buffer = skipBuffer;
+		long skipped = 0;
+		while (skipped < n) {
+			final int r = read(buffer, 0, (int) Math.min(n - skipped, buffer.length));
+			if (r == -1) {
+				break;
+			}
+			skipped += r;
+		}
+		return skipped;
+	}
+}
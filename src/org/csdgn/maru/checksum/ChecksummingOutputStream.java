@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2014 Robert Maupin
+ * 
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+package org.csdgn.maru.checksum;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Checksum;
+
+/**
+ * An output stream that updates one or more checksums with the data written
+ * through it, so the data can be verified in the same pass that copies it.
+ * 
+ * @author Robert Maupin
+ */
+public class ChecksummingOutputStream extends FilterOutputStream {
+	private final Checksum[] checksums;
+
+	/**
+	 * @param checksums
+	 *            the checksums to update, at least one
+	 */
+	public ChecksummingOutputStream(OutputStream out, Checksum... checksums) {
+		super(out);
+		if (checksums.length == 0) {
+			throw new IllegalArgumentException("At least one checksum is required.");
+		}
+		this.checksums = checksums.clone();
+	}
+
+	/**
+	 * @return the first checksum
+	 */
+	public Checksum getChecksum() {
+		return checksums[0];
+	}
+
+	/**
+	 * @return all the checksums, in the order given
+	 */
+	public Checksum[] getChecksums() {
+		return checksums.clone();
+	}
+
+	@Override
+	public void write(byte[] b) throws IOException {
+		write(b, 0, b.length);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		out.write(b, off, len);
+		for (Checksum checksum : checksums) {
+			checksum.update(b, off, len);
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		out.write(b);
+		for (Checksum checksum : checksums) {
+			checksum.update(b);
+		}
+	}
+}
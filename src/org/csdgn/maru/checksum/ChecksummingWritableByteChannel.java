@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2014 Robert Maupin
+ * 
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+package org.csdgn.maru.checksum;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.Checksum;
+
+/**
+ * A channel that updates one or more checksums with the data written through
+ * it, so the data can be verified in the same pass that copies it.
+ * 
+ * @author Robert Maupin
+ */
+public class ChecksummingWritableByteChannel implements WritableByteChannel {
+	private final WritableByteChannel channel;
+	private final Checksum[] checksums;
+
+	/**
+	 * @param checksums
+	 *            the checksums to update, at least one
+	 */
+	public ChecksummingWritableByteChannel(WritableByteChannel channel, Checksum... checksums) {
+		if (checksums.length == 0) {
+			throw new IllegalArgumentException("At least one checksum is required.");
+		}
+		this.channel = channel;
+		this.checksums = checksums.clone();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * @return the first checksum
+	 */
+	public Checksum getChecksum() {
+		return checksums[0];
+	}
+
+	/**
+	 * @return all the checksums, in the order given
+	 */
+	public Checksum[] getChecksums() {
+		return checksums.clone();
+	}
+
+	@Override
+	public boolean isOpen() {
+		return channel.isOpen();
+	}
+
+	@Override
+	public int write(ByteBuffer src) throws IOException {
+		final int start = src.position();
+		final int n = channel.write(src);
+		if (n > 0) {
+			final ByteBuffer view = src.duplicate();
+			view.limit(start + n);
+			for (Checksum checksum : checksums) {
+				view.position(start);
+				checksum.update(view);
+			}
+		}
+		return n;
+	}
+}
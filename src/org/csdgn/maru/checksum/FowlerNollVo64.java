@@ -0,0 +1,140 @@
+package org.csdgn.maru.checksum;
+
+import java.util.zip.Checksum;
+
+/**
+ * The 64 bit Fowler-Noll-Vo hash, as FNV-1 or FNV-1a. The wider hash is
+ * worth its cost when hashing many keys, such as for routing, where 32 bits
+ * would collide too often.
+ * 
+ * <p>
+ * The static methods hash without creating a checksum. Characters are hashed
+ * as their UTF-16 code units, high byte first, the same as hashing the bytes
+ * of the string in UTF-16BE.
+ * </p>
+ * 
+ * @see FowlerNollVo
+ */
+public class FowlerNollVo64 implements Checksum {
+	private static final long FNVPrime = 0x100000001B3L;
+	private static final long FNVOffsetBasis = 0xCBF29CE484222325L;
+
+	/**
+	 * @return the FNV-1 hash of the given bytes
+	 */
+	public static long hash1(byte[] b, int off, int len) {
+		return update1(FNVOffsetBasis, b, off, len);
+	}
+
+	/**
+	 * @return the FNV-1 hash of the given characters
+	 */
+	public static long hash1(CharSequence s) {
+		long hash = FNVOffsetBasis;
+		for (int i = 0; i < s.length(); ++i) {
+			final char c = s.charAt(i);
+			hash = (hash * FNVPrime) ^ (c >>> 8);
+			hash = (hash * FNVPrime) ^ (c & 0xFF);
+		}
+		return hash;
+	}
+
+	/**
+	 * @return the FNV-1a hash of the given bytes
+	 */
+	public static long hash1a(byte[] b, int off, int len) {
+		return update1a(FNVOffsetBasis, b, off, len);
+	}
+
+	/**
+	 * @return the FNV-1a hash of the given characters
+	 */
+	public static long hash1a(CharSequence s) {
+		long hash = FNVOffsetBasis;
+		for (int i = 0; i < s.length(); ++i) {
+			final char c = s.charAt(i);
+			hash = (hash ^ (c >>> 8)) * FNVPrime;
+			hash = (hash ^ (c & 0xFF)) * FNVPrime;
+		}
+		return hash;
+	}
+
+	private static long update1(long hash, byte[] b, int off, int len) {
+		final int end = off + len;
+		int i = off;
+		/* unroll */
+		for (; end - i >= 4; i += 4) {
+			hash = (hash * FNVPrime) ^ (b[i] & 0xFF);
+			hash = (hash * FNVPrime) ^ (b[i + 1] & 0xFF);
+			hash = (hash * FNVPrime) ^ (b[i + 2] & 0xFF);
+			hash = (hash * FNVPrime) ^ (b[i + 3] & 0xFF);
+		}
+		for (; i < end; ++i) {
+			hash = (hash * FNVPrime) ^ (b[i] & 0xFF);
+		}
+		return hash;
+	}
+
+	private static long update1a(long hash, byte[] b, int off, int len) {
+		final int end = off + len;
+		int i = off;
+		/* unroll */
+		for (; end - i >= 4; i += 4) {
+			hash = (hash ^ (b[i] & 0xFF)) * FNVPrime;
+			hash = (hash ^ (b[i + 1] & 0xFF)) * FNVPrime;
+			hash = (hash ^ (b[i + 2] & 0xFF)) * FNVPrime;
+			hash = (hash ^ (b[i + 3] & 0xFF)) * FNVPrime;
+		}
+		for (; i < end; ++i) {
+			hash = (hash ^ (b[i] & 0xFF)) * FNVPrime;
+		}
+		return hash;
+	}
+
+	private final boolean alternate;
+	private long hash;
+
+	/**
+	 * Creates an FNV-1a hash.
+	 */
+	public FowlerNollVo64() {
+		this(true);
+	}
+
+	/**
+	 * @param alternate
+	 *            <code>true</code> for FNV-1a, <code>false</code> for FNV-1
+	 */
+	public FowlerNollVo64(boolean alternate) {
+		this.alternate = alternate;
+		reset();
+	}
+
+	@Override
+	public long getValue() {
+		return hash;
+	}
+
+	@Override
+	public void reset() {
+		hash = FNVOffsetBasis;
+	}
+
+	public void update(byte[] b) {
+		update(b, 0, b.length);
+	}
+
+	@Override
+	public void update(byte[] b, int off, int len) {
+		hash = alternate ? update1a(hash, b, off, len) : update1(hash, b, off, len);
+	}
+
+	@Override
+	public void update(int b) {
+		if (alternate) {
+			hash = (hash ^ (b & 0xFF)) * FNVPrime;
+		} else {
+			hash = (hash * FNVPrime) ^ (b & 0xFF);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2014 Robert Maupin
+ * 
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+package org.csdgn.maru.checksum;
+
+/**
+ * Matrix operations over GF(2), used to combine CRCs. A matrix is an array of
+ * columns, column n being the image of bit n.
+ * 
+ * @author Robert Maupin
+ */
+final class GF2 {
+	/**
+	 * @return the matrix times the vector
+	 */
+	static long times(long[] mat, long vec) {
+		long sum = 0;
+		for (int i = 0; vec != 0; ++i, vec >>>= 1) {
+			if ((vec & 1) != 0) {
+				sum ^= mat[i];
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Applies the operator the given number of times to the vector, by
+	 * repeated squaring. The operator is not modified.
+	 */
+	static long power(long[] op, long vec, long times) {
+		long[] mat = op.clone();
+		long[] tmp = new long[mat.length];
+		while (times != 0) {
+			if ((times & 1) != 0) {
+				vec = times(mat, vec);
+			}
+			times >>>= 1;
+			if (times != 0) {
+				for (int i = 0; i < mat.length; ++i) {
+					tmp[i] = times(mat, mat[i]);
+				}
+				final long[] swap = mat;
+				mat = tmp;
+				tmp = swap;
+			}
+		}
+		return vec;
+	}
+
+	private GF2() {
+	}
+}
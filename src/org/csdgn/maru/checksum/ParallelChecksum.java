@@ -0,0 +1,252 @@
+/**
+ * Copyright (c) 2014 Robert Maupin
+ * 
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+package org.csdgn.maru.checksum;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.Checksum;
+
+/**
+ * Computes a checksum over large inputs on several cores. The input is split
+ * into ranges, each range is checksummed on its own and the results are
+ * combined, so only checksums that can be combined are supported.
+ * 
+ * @author Robert Maupin
+ */
+public class ParallelChecksum {
+	/**
+	 * Creates a checksum and combines the values of two ranges of it.
+	 */
+	public static interface Combiner {
+		Checksum create();
+
+		/**
+		 * @return the checksum of the second range appended to the first
+		 */
+		long combine(long value1, long value2, long len2);
+	}
+
+	public static final Combiner CHECKSUM8 = new Combiner() {
+		@Override
+		public Checksum create() {
+			return new Checksum8();
+		}
+
+		@Override
+		public long combine(long value1, long value2, long len2) {
+			return Checksum8.combine(value1, value2, len2);
+		}
+	};
+
+	public static final Combiner CHECKSUM16 = new Combiner() {
+		@Override
+		public Checksum create() {
+			return new Checksum16();
+		}
+
+		@Override
+		public long combine(long value1, long value2, long len2) {
+			return Checksum16.combine(value1, value2, len2);
+		}
+	};
+
+	public static final Combiner CHECKSUM32 = new Combiner() {
+		@Override
+		public Checksum create() {
+			return new Checksum32();
+		}
+
+		@Override
+		public long combine(long value1, long value2, long len2) {
+			return Checksum32.combine(value1, value2, len2);
+		}
+	};
+
+	public static final Combiner CRC16 = new Combiner() {
+		@Override
+		public Checksum create() {
+			return new CRC16();
+		}
+
+		@Override
+		public long combine(long value1, long value2, long len2) {
+			return org.csdgn.maru.checksum.CRC16.combine(value1, value2, len2);
+		}
+	};
+
+	/** the size of the ranges memory is split into */
+	private static final int MEMORY_SPLIT = 1 << 20;
+	/** the size of the ranges files are split into */
+	private static final long FILE_SPLIT = 1L << 24;
+	private static final int FILE_BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * @param model
+	 *            the CRC parameters
+	 * @return a combiner for CRCs of the given model
+	 */
+	public static Combiner crc(final CRC.Model model) {
+		return new Combiner() {
+			@Override
+			public Checksum create() {
+				return new CRC(model);
+			}
+
+			@Override
+			public long combine(long value1, long value2, long len2) {
+				return model.combine(value1, value2, len2);
+			}
+		};
+	}
+
+	/**
+	 * Computes the checksum of the given bytes on the common fork join pool.
+	 */
+	public static long compute(Combiner combiner, byte[] data, int off, int len) {
+		return compute(combiner, data, off, len, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Computes the checksum of the given bytes on the given pool.
+	 */
+	public static long compute(Combiner combiner, byte[] data, int off, int len, ForkJoinPool pool) {
+		if (off < 0 || len < 0 || off + len > data.length) {
+			throw new IndexOutOfBoundsException();
+		}
+		return pool.invoke(new Task(combiner, data, null, null, off, len));
+	}
+
+	/**
+	 * Computes the checksum of the remaining bytes of the buffer on the common
+	 * fork join pool. The position of the buffer is not changed.
+	 */
+	public static long compute(Combiner combiner, ByteBuffer buffer) {
+		return compute(combiner, buffer, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Computes the checksum of the remaining bytes of the buffer on the given
+	 * pool. The position of the buffer is not changed.
+	 */
+	public static long compute(Combiner combiner, ByteBuffer buffer, ForkJoinPool pool) {
+		return pool.invoke(new Task(combiner, null, buffer, null, buffer.position(), buffer.remaining()));
+	}
+
+	/**
+	 * Computes the checksum of the given file on the common fork join pool.
+	 */
+	public static long compute(Combiner combiner, File file) throws IOException {
+		return compute(combiner, file, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Computes the checksum of the given file on the given pool. Each range is
+	 * read with positional reads from a shared channel.
+	 */
+	public static long compute(Combiner combiner, File file, ForkJoinPool pool) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = raf.getChannel();
+			return pool.invoke(new Task(combiner, null, null, channel, 0, channel.size()));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static class Task extends RecursiveTask<Long> {
+		private static final long serialVersionUID = 1L;
+		private final Combiner combiner;
+		private final byte[] array;
+		private final ByteBuffer buffer;
+		private final FileChannel channel;
+		private final long off;
+		private final long len;
+
+		Task(Combiner combiner, byte[] array, ByteBuffer buffer, FileChannel channel, long off, long len) {
+			this.combiner = combiner;
+			this.array = array;
+			this.buffer = buffer;
+			this.channel = channel;
+			this.off = off;
+			this.len = len;
+		}
+
+		@Override
+		protected Long compute() {
+			if (len > (channel == null ? MEMORY_SPLIT : FILE_SPLIT)) {
+				final long half = len >>> 1;
+				final Task first = new Task(combiner, array, buffer, channel, off, half);
+				final Task second = new Task(combiner, array, buffer, channel, off + half, len - half);
+				second.fork();
+				final long value1 = first.compute();
+				final long value2 = second.join();
+				return combiner.combine(value1, value2, len - half);
+			}
+			final Checksum checksum = combiner.create();
+			if (array != null) {
+				checksum.update(array, (int) off, (int) len);
+			} else if (buffer != null) {
+				final ByteBuffer view = buffer.duplicate();
+				view.limit((int) (off + len)).position((int) off);
+				checksum.update(view);
+			} else {
+				read(checksum);
+			}
+			return checksum.getValue();
+		}
+
+		private void read(Checksum checksum) {
+			final ByteBuffer view = ByteBuffer.allocateDirect((int) Math.min(len, FILE_BUFFER_SIZE));
+			long position = off;
+			final long end = off + len;
+			try {
+				while (position < end) {
+					view.clear();
+					if (end - position < view.capacity()) {
+						view.limit((int) (end - position));
+					}
+					final int n = channel.read(view, position);
+					if (n == -1) {
+						throw new IOException("File shrank while being read.");
+					}
+					position += n;
+					view.flip();
+					checksum.update(view);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	private ParallelChecksum() {
+	}
+}
@@ -0,0 +1,299 @@
+/**
+ * Copyright (c) 2014 Robert Maupin
+ * 
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+package org.csdgn.maru.checksum;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.Checksum;
+
+/**
+ * The 64 bit xxHash, a fast non-cryptographic hash that consumes 32 bytes per
+ * round, 8 bytes in each of four independent lanes. Known values:
+ * 
+ * <pre>
+ * hash("", 0)    = 0xEF46DB3751D8E999
+ * hash("abc", 0) = 0x44BC2CF5AD770999
+ * hash("Nobody inspects the spammish repetition", 0) = 0xFBCEA83C8A378BF1
+ * </pre>
+ * 
+ * The static methods hash without creating a checksum.
+ * 
+ * @author Robert Maupin
+ */
+public class XXHash64 implements Checksum {
+	private static final long P1 = 0x9E3779B185EBCA87L;
+	private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long P3 = 0x165667B19E3779F9L;
+	private static final long P4 = 0x85EBCA77C2B2AE63L;
+	private static final long P5 = 0x27D4EB2F165667C5L;
+	private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle INTS = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+	/**
+	 * @return the hash of the given bytes with a seed of 0
+	 */
+	public static long hash(byte[] b) {
+		return hash(b, 0, b.length, 0);
+	}
+
+	/**
+	 * @return the hash of the given bytes
+	 */
+	public static long hash(byte[] b, int off, int len, long seed) {
+		if (off < 0 || len < 0 || off + len > b.length) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		final int end = off + len;
+		int i = off;
+		long h;
+		if (len >= 32) {
+			long v1 = seed + P1 + P2;
+			long v2 = seed + P2;
+			long v3 = seed;
+			long v4 = seed - P1;
+			for (; end - i >= 32; i += 32) {
+				v1 = round(v1, (long) LONGS.get(b, i));
+				v2 = round(v2, (long) LONGS.get(b, i + 8));
+				v3 = round(v3, (long) LONGS.get(b, i + 16));
+				v4 = round(v4, (long) LONGS.get(b, i + 24));
+			}
+			h = merge(v1, v2, v3, v4);
+		} else {
+			h = seed + P5;
+		}
+		return finish(h + len, b, i, end - i);
+	}
+
+	/**
+	 * Hashes the remaining bytes of the buffer, which is left at its limit.
+	 * 
+	 * @return the hash of the bytes
+	 */
+	public static long hash(ByteBuffer buffer, long seed) {
+		final int pos = buffer.position();
+		final int end = buffer.limit();
+		if (buffer.hasArray()) {
+			buffer.position(end);
+			return hash(buffer.array(), buffer.arrayOffset() + pos, end - pos, seed);
+		}
+		final boolean swap = buffer.order() == ByteOrder.BIG_ENDIAN;
+		final int len = end - pos;
+		int i = pos;
+		long h;
+		if (len >= 32) {
+			long v1 = seed + P1 + P2;
+			long v2 = seed + P2;
+			long v3 = seed;
+			long v4 = seed - P1;
+			for (; end - i >= 32; i += 32) {
+				v1 = round(v1, getLong(buffer, i, swap));
+				v2 = round(v2, getLong(buffer, i + 8, swap));
+				v3 = round(v3, getLong(buffer, i + 16, swap));
+				v4 = round(v4, getLong(buffer, i + 24, swap));
+			}
+			h = merge(v1, v2, v3, v4);
+		} else {
+			h = seed + P5;
+		}
+		h += len;
+		for (; end - i >= 8; i += 8) {
+			h ^= round(0, getLong(buffer, i, swap));
+			h = Long.rotateLeft(h, 27) * P1 + P4;
+		}
+		if (end - i >= 4) {
+			int v = buffer.getInt(i);
+			if (swap) {
+				v = Integer.reverseBytes(v);
+			}
+			h ^= (v & 0xFFFFFFFFL) * P1;
+			h = Long.rotateLeft(h, 23) * P2 + P3;
+			i += 4;
+		}
+		for (; i < end; ++i) {
+			h ^= (buffer.get(i) & 0xFF) * P5;
+			h = Long.rotateLeft(h, 11) * P1;
+		}
+		buffer.position(end);
+		return avalanche(h);
+	}
+
+	private static long getLong(ByteBuffer buffer, int index, boolean swap) {
+		final long v = buffer.getLong(index);
+		return swap ? Long.reverseBytes(v) : v;
+	}
+
+	private static long round(long acc, long input) {
+		acc += input * P2;
+		acc = Long.rotateLeft(acc, 31);
+		return acc * P1;
+	}
+
+	private static long merge(long v1, long v2, long v3, long v4) {
+		long h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+		h = (h ^ round(0, v1)) * P1 + P4;
+		h = (h ^ round(0, v2)) * P1 + P4;
+		h = (h ^ round(0, v3)) * P1 + P4;
+		h = (h ^ round(0, v4)) * P1 + P4;
+		return h;
+	}
+
+	/**
+	 * Mixes in the last bytes, less than 32 of them.
+	 */
+	private static long finish(long h, byte[] b, int off, int len) {
+		final int end = off + len;
+		int i = off;
+		for (; end - i >= 8; i += 8) {
+			h ^= round(0, (long) LONGS.get(b, i));
+			h = Long.rotateLeft(h, 27) * P1 + P4;
+		}
+		if (end - i >= 4) {
+			h ^= ((int) INTS.get(b, i) & 0xFFFFFFFFL) * P1;
+			h = Long.rotateLeft(h, 23) * P2 + P3;
+			i += 4;
+		}
+		for (; i < end; ++i) {
+			h ^= (b[i] & 0xFF) * P5;
+			h = Long.rotateLeft(h, 11) * P1;
+		}
+		return avalanche(h);
+	}
+
+	private static long avalanche(long h) {
+		h ^= h >>> 33;
+		h *= P2;
+		h ^= h >>> 29;
+		h *= P3;
+		h ^= h >>> 32;
+		return h;
+	}
+
+	private final long seed;
+	private final byte[] buffer = new byte[32];
+	private int buffered;
+	private long length;
+	private long v1;
+	private long v2;
+	private long v3;
+	private long v4;
+
+	public XXHash64() {
+		this(0);
+	}
+
+	public XXHash64(long seed) {
+		this.seed = seed;
+		reset();
+	}
+
+	@Override
+	public long getValue() {
+		final long h = length >= 32 ? merge(v1, v2, v3, v4) : seed + P5;
+		return finish(h + length, buffer, 0, buffered);
+	}
+
+	@Override
+	public void reset() {
+		v1 = seed + P1 + P2;
+		v2 = seed + P2;
+		v3 = seed;
+		v4 = seed - P1;
+		length = 0;
+		buffered = 0;
+	}
+
+	public void update(byte[] b) {
+		update(b, 0, b.length);
+	}
+
+	@Override
+	public void update(byte[] b, int off, int len) {
+		if (off < 0 || len < 0 || off + len > b.length) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		length += len;
+		if (buffered > 0) {
+			final int n = Math.min(len, 32 - buffered);
+			System.arraycopy(b, off, buffer, buffered, n);
+			buffered += n;
+			off += n;
+			len -= n;
+			if (buffered < 32) {
+				return;
+			}
+			stripe(buffer, 0);
+			buffered = 0;
+		}
+		for (; len >= 32; len -= 32) {
+			stripe(b, off);
+			off += 32;
+		}
+		System.arraycopy(b, off, buffer, 0, len);
+		buffered = len;
+	}
+
+	/**
+	 * Updates the hash with the remaining bytes of the buffer, which is left
+	 * at its limit.
+	 * 
+	 * @param data
+	 *            the bytes to add
+	 */
+	public void update(ByteBuffer data) {
+		if (data.hasArray()) {
+			final int pos = data.position();
+			update(data.array(), data.arrayOffset() + pos, data.limit() - pos);
+			data.position(data.limit());
+			return;
+		}
+		while (data.hasRemaining()) {
+			final int n = Math.min(data.remaining(), 32 - buffered);
+			data.get(buffer, buffered, n);
+			buffered += n;
+			length += n;
+			if (buffered == 32) {
+				stripe(buffer, 0);
+				buffered = 0;
+			}
+		}
+	}
+
+	@Override
+	public void update(int b) {
+		buffer[buffered++] = (byte) b;
+		++length;
+		if (buffered == 32) {
+			stripe(buffer, 0);
+			buffered = 0;
+		}
+	}
+
+	private void stripe(byte[] b, int i) {
+		v1 = round(v1, (long) LONGS.get(b, i));
+		v2 = round(v2, (long) LONGS.get(b, i + 8));
+		v3 = round(v3, (long) LONGS.get(b, i + 16));
+		v4 = round(v4, (long) LONGS.get(b, i + 24));
+	}
+}
@@ -22,6 +22,9 @@
  */
 package org.csdgn.maru.crypto;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 
 /**
@@ -47,38 +50,182 @@ public class Rabbit {
 
 	private final int[] X = new int[8];
 	private final int[] C = new int[8];
+	private final byte[] keystream = new byte[KEYSTREAM_LENGTH];
 	private byte b;
-	private int keyindex = 0;
-	private byte[] keystream = null;
+	private int keyindex = KEYSTREAM_LENGTH;
 
 	public Rabbit() {
 		b = 0;
 	}
 
+	/**
+	 * Creates a copy of the given cipher, including its position in the
+	 * keystream. Useful for keeping a checkpoint of a keyed cipher.
+	 * 
+	 * @param source
+	 *            the cipher to copy
+	 */
+	public Rabbit(final Rabbit source) {
+		copyFrom(source);
+	}
+
+	/**
+	 * Sets this cipher to the exact state of the given cipher, including its
+	 * position in the keystream.
+	 * 
+	 * @param source
+	 *            the cipher to copy
+	 */
+	public void copyFrom(final Rabbit source) {
+		System.arraycopy(source.X, 0, X, 0, 8);
+		System.arraycopy(source.C, 0, C, 0, 8);
+		System.arraycopy(source.keystream, 0, keystream, 0, KEYSTREAM_LENGTH);
+		b = source.b;
+		keyindex = source.keyindex;
+	}
+
 	public byte[] crypt(final byte[] message) {
 		return crypt(message, 0, message.length);
 	}
 
 	public byte[] crypt(final byte[] message, int off, int len) {
-		int index = off;
-		while (index < len) {
-			if (keystream == null || keyindex == KEYSTREAM_LENGTH) {
-				keystream = keyStream();
-				keyindex = 0;
+		crypt(message, off, message, off, len);
+		return message;
+	}
+
+	/**
+	 * Encrypts or decrypts <code>len</code> bytes from the source array into
+	 * the destination array. Whole blocks are combined with the keystream
+	 * straight from the cipher state, so this does not allocate. The source
+	 * and destination may be the same array at the same offset.
+	 * 
+	 * @param src
+	 *            the bytes to encrypt or decrypt
+	 * @param srcOff
+	 *            the offset into the source
+	 * @param dst
+	 *            where to put the result
+	 * @param dstOff
+	 *            the offset into the destination
+	 * @param len
+	 *            the number of bytes to process
+	 */
+	public void crypt(final byte[] src, int srcOff, final byte[] dst, int dstOff, int len) {
+		/* use up what is left of the last block */
+		for (; len > 0 && keyindex < KEYSTREAM_LENGTH; --len) {
+			dst[dstOff++] = (byte) (src[srcOff++] ^ keystream[keyindex++]);
+		}
+		for (; len >= KEYSTREAM_LENGTH; len -= KEYSTREAM_LENGTH) {
+			nextState();
+			/* unroll */
+			xor(src, srcOff, dst, dstOff, X[6] ^ X[3] >>> 16 ^ X[1] << 16);
+			xor(src, srcOff + 4, dst, dstOff + 4, X[4] ^ X[1] >>> 16 ^ X[7] << 16);
+			xor(src, srcOff + 8, dst, dstOff + 8, X[2] ^ X[7] >>> 16 ^ X[5] << 16);
+			xor(src, srcOff + 12, dst, dstOff + 12, X[0] ^ X[5] >>> 16 ^ X[3] << 16);
+			srcOff += KEYSTREAM_LENGTH;
+			dstOff += KEYSTREAM_LENGTH;
+		}
+		if (len > 0) {
+			keyStream();
+			for (; len > 0; --len) {
+				dst[dstOff++] = (byte) (src[srcOff++] ^ keystream[keyindex++]);
 			}
-			for (; keyindex < KEYSTREAM_LENGTH && index < len; ++keyindex) {
-				message[index++] ^= keystream[keyindex];
+		}
+	}
+
+	/**
+	 * Encrypts or decrypts the remaining bytes of the buffer in place. This
+	 * works on direct and mapped buffers without copying them onto the heap.
+	 * The position of the buffer is advanced to its limit.
+	 * 
+	 * @param buffer
+	 *            the bytes to encrypt or decrypt
+	 * @return the given buffer
+	 */
+	public ByteBuffer crypt(final ByteBuffer buffer) {
+		crypt(buffer, buffer);
+		return buffer;
+	}
+
+	/**
+	 * Encrypts or decrypts the remaining bytes of the source buffer into the
+	 * destination buffer. Whole blocks are processed 8 bytes at a time. The
+	 * positions of both buffers are advanced by the number of bytes
+	 * processed. The buffers may be the same buffer.
+	 * 
+	 * @param src
+	 *            the bytes to encrypt or decrypt
+	 * @param dst
+	 *            where to put the result
+	 * @throws BufferOverflowException
+	 *             if the destination does not have room for the source
+	 */
+	public void crypt(final ByteBuffer src, final ByteBuffer dst) {
+		int len = src.remaining();
+		if (dst.remaining() < len) {
+			throw new BufferOverflowException();
+		}
+		final int srcStart = src.position();
+		final int dstStart = dst.position();
+		if (src.hasArray() && dst.hasArray()) {
+			crypt(src.array(), src.arrayOffset() + srcStart, dst.array(), dst.arrayOffset() + dstStart, len);
+			src.position(srcStart + len);
+			dst.position(dstStart + len);
+			return;
+		}
+		final boolean srcSwap = src.order() == ByteOrder.LITTLE_ENDIAN;
+		final boolean dstSwap = dst.order() == ByteOrder.LITTLE_ENDIAN;
+		int s = srcStart;
+		int d = dstStart;
+		/* use up what is left of the last block */
+		for (; len > 0 && keyindex < KEYSTREAM_LENGTH; --len) {
+			dst.put(d++, (byte) (src.get(s++) ^ keystream[keyindex++]));
+		}
+		for (; len >= KEYSTREAM_LENGTH; len -= KEYSTREAM_LENGTH) {
+			nextState();
+			/* the keystream is big endian */
+			final long k0 = (long) (X[6] ^ X[3] >>> 16 ^ X[1] << 16) << 32 | (X[4] ^ X[1] >>> 16 ^ X[7] << 16) & 0xFFFFFFFFL;
+			final long k1 = (long) (X[2] ^ X[7] >>> 16 ^ X[5] << 16) << 32 | (X[0] ^ X[5] >>> 16 ^ X[3] << 16) & 0xFFFFFFFFL;
+			long w0 = src.getLong(s);
+			long w1 = src.getLong(s + 8);
+			if (srcSwap) {
+				w0 = Long.reverseBytes(w0);
+				w1 = Long.reverseBytes(w1);
+			}
+			w0 ^= k0;
+			w1 ^= k1;
+			if (dstSwap) {
+				w0 = Long.reverseBytes(w0);
+				w1 = Long.reverseBytes(w1);
 			}
+			dst.putLong(d, w0);
+			dst.putLong(d + 8, w1);
+			s += KEYSTREAM_LENGTH;
+			d += KEYSTREAM_LENGTH;
 		}
-		return message;
+		if (len > 0) {
+			keyStream();
+			for (; len > 0; --len) {
+				dst.put(d++, (byte) (src.get(s++) ^ keystream[keyindex++]));
+			}
+		}
+		src.position(s);
+		dst.position(d);
+	}
+
+	private static void xor(final byte[] src, final int srcOff, final byte[] dst, final int dstOff, final int x) {
+		dst[dstOff] = (byte) (src[srcOff] ^ x >>> 24);
+		dst[dstOff + 1] = (byte) (src[srcOff + 1] ^ x >> 16);
+		dst[dstOff + 2] = (byte) (src[srcOff + 2] ^ x >> 8);
+		dst[dstOff + 3] = (byte) (src[srcOff + 3] ^ x);
 	}
 
 	/**
-	 * returns 16 bytes
+	 * Fills the keystream buffer with the next 16 bytes.
 	 */
-	private byte[] keyStream() {
+	private void keyStream() {
 		nextState();
-		final byte[] s = new byte[16];
+		final byte[] s = keystream;
 		/* unroll */
 		int x = X[6] ^ X[3] >>> 16 ^ X[1] << 16;
 		s[0] = (byte) (x >>> 24);
@@ -100,34 +247,45 @@ public class Rabbit {
 		s[13] = (byte) (x >> 16);
 		s[14] = (byte) (x >> 8);
 		s[15] = (byte) x;
-		return s;
+		keyindex = 0;
+	}
+
+	/**
+	 * The g function, the square of the sum xor'd with its own upper half.
+	 */
+	private static int g(final int x, final int c) {
+		final long t = x + c & 0xFFFFFFFFL;
+		final long sq = t * t;
+		return (int) (sq ^ sq >>> 32);
 	}
 
 	private void nextState() {
 		/* counter update */
-		/* TODO optimize this */
+		int carry = b;
 		for (int j = 0; j < 8; ++j) {
-			final long t = (C[j] & 0xFFFFFFFFL) + (A[j] & 0xFFFFFFFFL) + b;
-			b = (byte) (t >>> 32);
-			C[j] = (int) (t & 0xFFFFFFFF);
+			final long t = (C[j] & 0xFFFFFFFFL) + (A[j] & 0xFFFFFFFFL) + carry;
+			carry = (int) (t >>> 32);
+			C[j] = (int) t;
 		}
+		b = (byte) carry;
 		/* next state function */
-		/* TODO optimize this */
-		final int G[] = new int[8];
-		for (int j = 0; j < 8; ++j) {
-			// TODO: reduce this to use 32 bits only
-			long t = X[j] + C[j] & 0xFFFFFFFFL;
-			G[j] = (int) ((t *= t) ^ t >>> 32);
-		}
+		final int g0 = g(X[0], C[0]);
+		final int g1 = g(X[1], C[1]);
+		final int g2 = g(X[2], C[2]);
+		final int g3 = g(X[3], C[3]);
+		final int g4 = g(X[4], C[4]);
+		final int g5 = g(X[5], C[5]);
+		final int g6 = g(X[6], C[6]);
+		final int g7 = g(X[7], C[7]);
 		/* unroll */
-		X[0] = G[0] + rotl(G[7], 16) + rotl(G[6], 16);
-		X[1] = G[1] + rotl(G[0], 8) + G[7];
-		X[2] = G[2] + rotl(G[1], 16) + rotl(G[0], 16);
-		X[3] = G[3] + rotl(G[2], 8) + G[1];
-		X[4] = G[4] + rotl(G[3], 16) + rotl(G[2], 16);
-		X[5] = G[5] + rotl(G[4], 8) + G[3];
-		X[6] = G[6] + rotl(G[5], 16) + rotl(G[4], 16);
-		X[7] = G[7] + rotl(G[6], 8) + G[5];
+		X[0] = g0 + rotl(g7, 16) + rotl(g6, 16);
+		X[1] = g1 + rotl(g0, 8) + g7;
+		X[2] = g2 + rotl(g1, 16) + rotl(g0, 16);
+		X[3] = g3 + rotl(g2, 8) + g1;
+		X[4] = g4 + rotl(g3, 16) + rotl(g2, 16);
+		X[5] = g5 + rotl(g4, 8) + g3;
+		X[6] = g6 + rotl(g5, 16) + rotl(g4, 16);
+		X[7] = g7 + rotl(g6, 8) + g5;
 	}
 
 	/**
@@ -135,20 +293,21 @@ public class Rabbit {
 	 */
 	public void reset() {
 		b = 0;
-		keyindex = 0;
-		keystream = null;
+		keyindex = KEYSTREAM_LENGTH;
+		Arrays.fill(keystream, (byte) 0);
 		Arrays.fill(X, 0);
 		Arrays.fill(C, 0);
 	}
 
 	/**
 	 * @param IV
-	 *            An array of 8 bytes
+	 *            An array of 8 bytes, most significant byte first (the byte
+	 *            order used by RFC 4503)
 	 */
 	public void setupIV(final byte[] IV) {
 		short[] sIV = new short[IV.length >> 1];
-		for (int i = 0; i < sIV.length; ++i) {
-			sIV[i] = (short) (IV[i << 1] << 8 | IV[(2 << 1) + 1]);
+		for (int i = 0, j = (sIV.length << 1) - 2; i < sIV.length; ++i, j -= 2) {
+			sIV[i] = (short) ((IV[j] & 0xFF) << 8 | IV[j + 1] & 0xFF);
 		}
 		setupIV(sIV);
 	}
@@ -174,14 +333,41 @@ public class Rabbit {
 		nextState();
 	}
 
+	/**
+	 * @param iv
+	 *            the 64 bit IV, the most significant 16 bits are the last
+	 *            short of {@link #setupIV(short[])}
+	 */
+	public void setupIV(final long iv) {
+		final int i0 = (int) iv & 0xFFFF;
+		final int i1 = (int) (iv >>> 16) & 0xFFFF;
+		final int i2 = (int) (iv >>> 32) & 0xFFFF;
+		final int i3 = (int) (iv >>> 48) & 0xFFFF;
+		/* unroll */
+		C[0] ^= i1 << 16 | i0;
+		C[1] ^= i3 << 16 | i1;
+		C[2] ^= i3 << 16 | i2;
+		C[3] ^= i2 << 16 | i0;
+		C[4] ^= i1 << 16 | i0;
+		C[5] ^= i3 << 16 | i1;
+		C[6] ^= i3 << 16 | i2;
+		C[7] ^= i2 << 16 | i0;
+		/* unroll */
+		nextState();
+		nextState();
+		nextState();
+		nextState();
+	}
+
 	/**
 	 * @param key
-	 *            An array of 16 bytes
+	 *            An array of 16 bytes, most significant byte first (the byte
+	 *            order used by RFC 4503)
 	 */
 	public void setupKey(final byte[] key) {
 		short[] sKey = new short[key.length >> 1];
-		for (int i = 0; i < sKey.length; ++i) {
-			sKey[i] = (short) (key[i << 1] << 8 | key[(2 << 1) + 1]);
+		for (int i = 0, j = (sKey.length << 1) - 2; i < sKey.length; ++i, j -= 2) {
+			sKey[i] = (short) ((key[j] & 0xFF) << 8 | key[j + 1] & 0xFF);
 		}
 		setupKey(sKey);
 	}
@@ -225,16 +411,23 @@ public class Rabbit {
 		C[7] ^= X[3];
 	}
 
+	/**
+	 * Advances the keystream by the given number of bytes. Whole blocks only
+	 * step the cipher state.
+	 * 
+	 * @param n
+	 *            the number of bytes to skip
+	 */
 	public void skip(long n) {
-		int index = 0;
-		while (index < n) {
-			if (keystream == null || keyindex == KEYSTREAM_LENGTH) {
-				keystream = keyStream();
-				keyindex = 0;
-			}
-			for (; keyindex < KEYSTREAM_LENGTH && index < n; ++keyindex) {
-				index++;
-			}
+		for (; n > 0 && keyindex < KEYSTREAM_LENGTH; --n) {
+			++keyindex;
+		}
+		for (; n >= KEYSTREAM_LENGTH; n -= KEYSTREAM_LENGTH) {
+			nextState();
+		}
+		if (n > 0) {
+			keyStream();
+			keyindex = (int) n;
 		}
 	}
 }
@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2014 Robert Maupin
+ * 
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+package org.csdgn.maru.crypto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * A seekable channel over data encrypted with a {@link SegmentedRabbit}.
+ * Reads decrypt and writes encrypt at the position of the underlying
+ * channel, so byte ranges can be served from anywhere in a large encrypted
+ * file without decrypting from the beginning.
+ * 
+ * @author Robert Maupin
+ */
+public class RabbitChannel implements SeekableByteChannel {
+	private static final int BUFFER_SIZE = 8192;
+
+	public final SegmentedRabbit rabbit;
+	private final SeekableByteChannel channel;
+	private ByteBuffer buffer = null;
+
+	/**
+	 * @param channel
+	 *            the channel holding the encrypted data, usually a
+	 *            {@link java.nio.channels.FileChannel}
+	 * @param rabbit
+	 *            the keyed cipher
+	 */
+	public RabbitChannel(SeekableByteChannel channel, SegmentedRabbit rabbit) {
+		this.channel = channel;
+		this.rabbit = rabbit;
+	}
+
+	/**
+	 * @param channel
+	 *            the channel holding the encrypted data
+	 * @param key
+	 *            16 bytes
+	 * @param iv
+	 *            8 bytes
+	 */
+	public RabbitChannel(SeekableByteChannel channel, byte[] key, byte[] iv) {
+		this(channel, new SegmentedRabbit(key, iv));
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	@Override
+	public boolean isOpen() {
+		return channel.isOpen();
+	}
+
+	@Override
+	public long position() throws IOException {
+		return channel.position();
+	}
+
+	@Override
+	public RabbitChannel position(long newPosition) throws IOException {
+		channel.position(newPosition);
+		return this;
+	}
+
+	@Override
+	public int read(ByteBuffer dst) throws IOException {
+		final long position = channel.position();
+		final int start = dst.position();
+		final int n = channel.read(dst);
+		if (n > 0) {
+			final int limit = dst.limit();
+			dst.position(start);
+			dst.limit(start + n);
+			rabbit.crypt(position, dst);
+			dst.limit(limit);
+		}
+		return n;
+	}
+
+	@Override
+	public long size() throws IOException {
+		return channel.size();
+	}
+
+	@Override
+	public RabbitChannel truncate(long size) throws IOException {
+		channel.truncate(size);
+		return this;
+	}
+
+	@Override
+	public int write(ByteBuffer src) throws IOException {
+		if (buffer == null) {
+			buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		}
+		long position = channel.position();
+		final int limit = src.limit();
+		int written = 0;
+		try {
+			while (src.hasRemaining()) {
+				final int n = Math.min(src.remaining(), BUFFER_SIZE);
+				src.limit(src.position() + n);
+				buffer.clear();
+				rabbit.crypt(position, src, buffer);
+				src.limit(limit);
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				position += n;
+				written += n;
+			}
+		} finally {
+			src.limit(limit);
+		}
+		return written;
+	}
+}
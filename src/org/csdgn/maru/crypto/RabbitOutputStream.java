@@ -22,19 +22,33 @@
  */
 package org.csdgn.maru.crypto;
 
+import java.io.FileOutputStream;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * The RabbitOutputStream is more efficient then the RabbitInputStream. Due to
  * not needing to preserve input arrays.
  * 
+ * <p>
+ * Data is encrypted through a reusable buffer and written out a buffer at a
+ * time, so the caller's arrays are left alone and large writes do not
+ * allocate.
+ * </p>
+ * 
  * @author Robert Maupin
  */
 public class RabbitOutputStream extends FilterOutputStream {
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
 	public final Rabbit rabbit;
+	private int bufferSize = DEFAULT_BUFFER_SIZE;
+	private byte[] buffer = null;
+	private ByteBuffer direct = null;
+	private WritableByteChannel channel = null;
 
 	/**
 	 * zero key stream
@@ -115,26 +129,73 @@ public class RabbitOutputStream extends FilterOutputStream {
 		rabbit.setupIV(iv);
 	}
 
+	/**
+	 * @param rabbit
+	 *            a keyed cipher
+	 * @param bufferSize
+	 *            the size of the buffer data is encrypted through
+	 * @param direct
+	 *            if the buffer should be a direct buffer written straight to
+	 *            the file channel, this only has an effect if the stream is a
+	 *            {@link FileOutputStream}
+	 */
+	public RabbitOutputStream(OutputStream out, Rabbit rabbit, int bufferSize, boolean direct) {
+		super(out);
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Buffer size must be positive.");
+		}
+		this.rabbit = rabbit;
+		this.bufferSize = bufferSize;
+		if (direct && out.getClass() == FileOutputStream.class) {
+			this.direct = ByteBuffer.allocateDirect(bufferSize);
+			this.channel = ((FileOutputStream) out).getChannel();
+		}
+	}
+
 	@Override
 	public void write(byte[] b) throws IOException {
-		// rabbit alters the array, so we have to make a copy
-		byte[] data = b.clone();
-		rabbit.crypt(data);
-		out.write(data);
+		write(b, 0, b.length);
 	}
 
 	@Override
 	public void write(byte[] b, int off, int len) throws IOException {
-		// rabbit alters the array, so we have to make a copy
-		byte[] data = Arrays.copyOfRange(b, off, off + len);
-		rabbit.crypt(data, 0, data.length);
-		out.write(data);
+		if (off < 0 || len < 0 || off + len > b.length) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (direct != null) {
+			final ByteBuffer src = ByteBuffer.wrap(b, off, len);
+			while (src.hasRemaining()) {
+				src.limit(src.position() + Math.min(src.remaining(), bufferSize));
+				direct.clear();
+				rabbit.crypt(src, direct);
+				src.limit(off + len);
+				direct.flip();
+				while (direct.hasRemaining()) {
+					channel.write(direct);
+				}
+			}
+			return;
+		}
+		// rabbit would alter the array, so encrypt it into our buffer
+		if (buffer == null) {
+			buffer = new byte[bufferSize];
+		}
+		while (len > 0) {
+			final int n = Math.min(len, bufferSize);
+			rabbit.crypt(b, off, buffer, 0, n);
+			out.write(buffer, 0, n);
+			off += n;
+			len -= n;
+		}
 	}
 
 	@Override
 	public void write(int b) throws IOException {
-		byte[] data = new byte[] { (byte) b };
-		rabbit.crypt(data);
-		out.write(data[0]);
+		if (buffer == null) {
+			buffer = new byte[direct == null ? bufferSize : 1];
+		}
+		buffer[0] = (byte) b;
+		rabbit.crypt(buffer, 0, 1);
+		out.write(buffer[0]);
 	}
 }
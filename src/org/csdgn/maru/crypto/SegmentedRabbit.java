@@ -0,0 +1,355 @@
+/**
+ * Copyright (c) 2014 Robert Maupin
+ * 
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+package org.csdgn.maru.crypto;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The Rabbit stream cipher in a segmented layout that allows random access.
+ * The stream is cut into segments of a fixed size, and each segment is
+ * encrypted with its own IV, the master IV plus the segment index. Any
+ * position can be reached by setting up a single IV and skipping less than
+ * one segment of keystream, rather than generating all the keystream before
+ * it.
+ * 
+ * <p>
+ * The first segment matches a plain {@link Rabbit} stream set up with the
+ * same key and {@link Rabbit#setupIV(long)} with the master IV, later
+ * segments do not. As with any stream cipher
+ * never reuse a key and IV pair, and keep the master IVs of different
+ * streams under the same key further apart than their segment counts.
+ * </p>
+ * 
+ * <p>
+ * Since the segments are independent, large buffers can be processed on
+ * several cores at once with the <code>parallelCrypt</code> methods.
+ * </p>
+ * 
+ * @author Robert Maupin
+ */
+public class SegmentedRabbit {
+	public static final int DEFAULT_SEGMENT_SIZE = 65536;
+	/** the fewest segments a parallel task will split */
+	private static final int MINIMUM_SPLIT = 4;
+
+	private static long toLong(final byte[] iv) {
+		long value = 0;
+		for (int i = 0; i < 8; ++i) {
+			value = value << 8 | iv[i] & 0xFF;
+		}
+		return value;
+	}
+
+	private final Rabbit master;
+	private final long iv;
+	private final int segmentSize;
+	private final Rabbit rabbit;
+	/** the stream position the working cipher is at, or -1 */
+	private long position = -1;
+
+	/**
+	 * @param key
+	 *            16 bytes
+	 * @param iv
+	 *            8 bytes
+	 */
+	public SegmentedRabbit(byte[] key, byte[] iv) {
+		this(key, iv, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * @param key
+	 *            16 bytes
+	 * @param iv
+	 *            8 bytes
+	 * @param segmentSize
+	 *            the size of each segment, a positive multiple of 16
+	 */
+	public SegmentedRabbit(byte[] key, byte[] iv, int segmentSize) {
+		if (key.length != 16) {
+			throw new IllegalArgumentException("A byte array key must have 16 entries.");
+		}
+		if (iv.length != 8) {
+			throw new IllegalArgumentException("A byte array iv must have 8 entries.");
+		}
+		checkSegmentSize(segmentSize);
+		this.master = new Rabbit();
+		this.master.setupKey(key);
+		this.iv = toLong(iv);
+		this.segmentSize = segmentSize;
+		this.rabbit = new Rabbit();
+	}
+
+	/**
+	 * @param key
+	 *            8 shorts
+	 * @param iv
+	 *            the master IV
+	 * @param segmentSize
+	 *            the size of each segment, a positive multiple of 16
+	 */
+	public SegmentedRabbit(short[] key, long iv, int segmentSize) {
+		if (key.length != 8) {
+			throw new IllegalArgumentException("A short array key must have 8 entries.");
+		}
+		checkSegmentSize(segmentSize);
+		this.master = new Rabbit();
+		this.master.setupKey(key);
+		this.iv = iv;
+		this.segmentSize = segmentSize;
+		this.rabbit = new Rabbit();
+	}
+
+	private static void checkSegmentSize(int segmentSize) {
+		if (segmentSize <= 0 || (segmentSize & 15) != 0) {
+			throw new IllegalArgumentException("The segment size must be a positive multiple of 16.");
+		}
+	}
+
+	/**
+	 * Encrypts or decrypts data in place.
+	 * 
+	 * @param position
+	 *            the position of the data in the stream
+	 * @param data
+	 *            the bytes to encrypt or decrypt
+	 * @param off
+	 *            the offset into the array
+	 * @param len
+	 *            the number of bytes to process
+	 */
+	public void crypt(long position, byte[] data, int off, int len) {
+		while (len > 0) {
+			final int n = seek(position, len);
+			rabbit.crypt(data, off, data, off, n);
+			this.position = position += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Encrypts or decrypts the remaining bytes of the buffer in place. The
+	 * position of the buffer is advanced to its limit.
+	 * 
+	 * @param position
+	 *            the position of the data in the stream
+	 * @param buffer
+	 *            the bytes to encrypt or decrypt
+	 */
+	public void crypt(long position, ByteBuffer buffer) {
+		crypt(position, buffer, buffer);
+	}
+
+	/**
+	 * Encrypts or decrypts the remaining bytes of the source buffer into the
+	 * destination buffer. The positions of both are advanced by the number of
+	 * bytes processed.
+	 * 
+	 * @param position
+	 *            the position of the data in the stream
+	 * @param src
+	 *            the bytes to encrypt or decrypt
+	 * @param dst
+	 *            where to put the result
+	 */
+	public void crypt(long position, ByteBuffer src, ByteBuffer dst) {
+		final int limit = src.limit();
+		try {
+			int len = src.remaining();
+			while (len > 0) {
+				final int n = seek(position, len);
+				src.limit(src.position() + n);
+				rabbit.crypt(src, dst);
+				this.position = position += n;
+				len -= n;
+			}
+		} finally {
+			src.limit(limit);
+		}
+	}
+
+	/**
+	 * Encrypts or decrypts data in place, processing the segments in parallel
+	 * on the common fork join pool.
+	 * 
+	 * @param position
+	 *            the position of the data in the stream
+	 * @param data
+	 *            the bytes to encrypt or decrypt
+	 * @param off
+	 *            the offset into the array
+	 * @param len
+	 *            the number of bytes to process
+	 */
+	public void parallelCrypt(long position, byte[] data, int off, int len) {
+		parallelCrypt(position, data, off, len, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Encrypts or decrypts data in place, processing the segments in parallel
+	 * on the given pool.
+	 * 
+	 * @param position
+	 *            the position of the data in the stream
+	 * @param data
+	 *            the bytes to encrypt or decrypt
+	 * @param off
+	 *            the offset into the array
+	 * @param len
+	 *            the number of bytes to process
+	 * @param pool
+	 *            the pool to run on
+	 */
+	public void parallelCrypt(long position, byte[] data, int off, int len, ForkJoinPool pool) {
+		if (off < 0 || len < 0 || off + len > data.length) {
+			throw new IndexOutOfBoundsException();
+		}
+		pool.invoke(new CryptTask(position, data, null, off, len));
+	}
+
+	/**
+	 * Encrypts or decrypts the remaining bytes of the buffer in place,
+	 * processing the segments in parallel on the common fork join pool. The
+	 * position of the buffer is advanced to its limit.
+	 * 
+	 * @param position
+	 *            the position of the data in the stream
+	 * @param buffer
+	 *            the bytes to encrypt or decrypt
+	 */
+	public void parallelCrypt(long position, ByteBuffer buffer) {
+		parallelCrypt(position, buffer, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Encrypts or decrypts the remaining bytes of the buffer in place,
+	 * processing the segments in parallel on the given pool. The position of
+	 * the buffer is advanced to its limit.
+	 * 
+	 * @param position
+	 *            the position of the data in the stream
+	 * @param buffer
+	 *            the bytes to encrypt or decrypt
+	 * @param pool
+	 *            the pool to run on
+	 */
+	public void parallelCrypt(long position, ByteBuffer buffer, ForkJoinPool pool) {
+		if (buffer.hasArray()) {
+			final int start = buffer.position();
+			parallelCrypt(position, buffer.array(), buffer.arrayOffset() + start, buffer.remaining(), pool);
+			buffer.position(buffer.limit());
+			return;
+		}
+		pool.invoke(new CryptTask(position, null, buffer, buffer.position(), buffer.remaining()));
+		buffer.position(buffer.limit());
+	}
+
+	/**
+	 * Splits its range on segment boundaries until it is small enough to do
+	 * with a cipher of its own.
+	 */
+	private class CryptTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final long position;
+		private final byte[] array;
+		private final ByteBuffer buffer;
+		private final int off;
+		private final int len;
+
+		CryptTask(long position, byte[] array, ByteBuffer buffer, int off, int len) {
+			this.position = position;
+			this.array = array;
+			this.buffer = buffer;
+			this.off = off;
+			this.len = len;
+		}
+
+		@Override
+		protected void compute() {
+			if (len > (long) segmentSize * MINIMUM_SPLIT) {
+				/* split at the segment boundary nearest the middle */
+				final long middle = position + (len >>> 1);
+				final int half = (int) ((middle + segmentSize - 1) / segmentSize * segmentSize - position);
+				if (half < len) {
+					invokeAll(new CryptTask(position, array, buffer, off, half),
+							new CryptTask(position + half, array, buffer, off + half, len - half));
+					return;
+				}
+			}
+			final Rabbit cipher = new Rabbit();
+			final ByteBuffer view = buffer == null ? null : buffer.duplicate();
+			long pos = position;
+			int index = off;
+			int remaining = len;
+			while (remaining > 0) {
+				final long segment = pos / segmentSize;
+				final int offset = (int) (pos - segment * segmentSize);
+				final int n = Math.min(remaining, segmentSize - offset);
+				setupSegment(cipher, segment, offset);
+				if (view == null) {
+					cipher.crypt(array, index, array, index, n);
+				} else {
+					view.limit(index + n).position(index);
+					cipher.crypt(view);
+				}
+				pos += n;
+				index += n;
+				remaining -= n;
+			}
+		}
+	}
+
+	/**
+	 * @return the size of each segment
+	 */
+	public int getSegmentSize() {
+		return segmentSize;
+	}
+
+	/**
+	 * Moves the working cipher to the given position, unless it is already
+	 * there.
+	 * 
+	 * @return how many bytes may be processed before the next segment
+	 */
+	private int seek(long position, int len) {
+		final long segment = position / segmentSize;
+		final int offset = (int) (position - segment * segmentSize);
+		if (position != this.position || offset == 0) {
+			setupSegment(rabbit, segment, offset);
+		}
+		return Math.min(len, segmentSize - offset);
+	}
+
+	/**
+	 * Sets the given cipher to the given offset into the given segment.
+	 */
+	void setupSegment(Rabbit cipher, long segment, int offset) {
+		cipher.copyFrom(master);
+		cipher.setupIV(iv + segment);
+		cipher.skip(offset);
+	}
+}
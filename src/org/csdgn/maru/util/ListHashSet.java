@@ -31,6 +31,8 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 
 /**
  * A specialized set that extends both list and set. I don't remember if I
@@ -303,6 +305,14 @@ public class ListHashSet<E> implements List<E>, Set<E> {
 		return this.list.size();
 	}
 
+	/**
+	 * List and Set both supply a default, so one must be chosen here.
+	 */
+	@Override
+	public Spliterator<E> spliterator() {
+		return Spliterators.spliterator(this, Spliterator.ORDERED | Spliterator.DISTINCT);
+	}
+
 	@Override
 	public List<E> subList(final int fromIndex, final int toIndex) {
 		return this.list.subList(fromIndex, toIndex);